@@ -0,0 +1,133 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.notifier.email;
+
+import com.icegreen.greenmail.util.GreenMail;
+import com.icegreen.greenmail.util.ServerSetup;
+import io.gravitee.notifier.api.Notification;
+import io.gravitee.notifier.email.configuration.EmailNotifierConfiguration;
+import io.vertx.core.Vertx;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Compares sending a burst of notifications with one {@link EmailNotifier#doSend} call per notification and with a
+ * single {@link EmailNotifier#sendAll} call, against an embedded GreenMail SMTP server.
+ *
+ * @author GraviteeSource Team
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class BatchSendBenchmark {
+
+    private static final int SMTP_PORT = 3125;
+
+    @Param({ "10", "100" })
+    public int batchSize;
+
+    private GreenMail greenMail;
+    private Vertx vertx;
+    private EmailNotifier notifier;
+    private List<Notification> notifications;
+    private List<Map<String, Object>> parameters;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        greenMail = new GreenMail(new ServerSetup(SMTP_PORT, "127.0.0.1", ServerSetup.PROTOCOL_SMTP));
+        greenMail.start();
+        vertx = Vertx.vertx();
+
+        final EmailNotifierConfiguration configuration = new EmailNotifierConfiguration();
+        configuration.setHost("127.0.0.1");
+        configuration.setPort(SMTP_PORT);
+        configuration.setFrom("noreply@gravitee.io");
+        configuration.setTo("${owner}");
+        configuration.setSubject("[${api}] Quota reached");
+        configuration.setBody("<p>The API <b>${api}</b> has reached its quota.</p>");
+
+        notifier = new EmailNotifier(configuration);
+        notifier.setTemplatesPath(Files.createTempDirectory("templates").toString());
+        notifier.afterPropertiesSet();
+
+        notifications = new ArrayList<>(batchSize);
+        parameters = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            final Notification notification = new Notification();
+            notification.setType(EmailNotifier.TYPE);
+            notifications.add(notification);
+            parameters.add(Map.of("owner", "owner-" + i + "@gravitee.io", "api", "API " + i));
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void purge() throws Exception {
+        greenMail.purgeEmailFromAllMailboxes();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        vertx.close();
+        greenMail.stop();
+    }
+
+    @Benchmark
+    public Object sendOneByOne() throws Exception {
+        return onContext(
+            () -> {
+                final List<CompletableFuture<Void>> futures = new ArrayList<>(batchSize);
+                for (int i = 0; i < batchSize; i++) {
+                    futures.add(notifier.doSend(notifications.get(i), parameters.get(i)));
+                }
+                return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).thenApply(v -> Collections.emptyList());
+            }
+        );
+    }
+
+    @Benchmark
+    public Object sendAll() throws Exception {
+        return onContext(() -> notifier.sendAll(notifications, parameters));
+    }
+
+    private <T> T onContext(final Supplier<CompletableFuture<T>> action) throws Exception {
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        vertx.runOnContext(
+            v ->
+                action
+                    .get()
+                    .whenComplete(
+                        (value, throwable) -> {
+                            if (throwable != null) {
+                                result.completeExceptionally(throwable);
+                            } else {
+                                result.complete(value);
+                            }
+                        }
+                    )
+        );
+        return result.get(1, TimeUnit.MINUTES);
+    }
+}
@@ -0,0 +1,116 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.notifier.email;
+
+import freemarker.template.Configuration;
+import freemarker.template.Template;
+import io.gravitee.notifier.email.configuration.EmailNotifierConfiguration;
+import io.gravitee.notifier.email.html.ImageReferenceScanner;
+import io.gravitee.notifier.email.html.ImageReferenceScanner.ImageReference;
+import io.vertx.ext.mail.MailMessage;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures the preparation of report-style emails, whose body is a large table, to compare the memory allocated per
+ * message (<code>gc.alloc.rate.norm</code>) by {@link EmailNotifier#prepareMailMessage}, which renders the body into a
+ * pooled buffer, with the former path rendering it into a <code>StringWriter</code> and rewriting the image references
+ * into a <code>StringBuilder</code>.
+ *
+ * @author GraviteeSource Team
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LargeBodyBenchmark {
+
+    private static final String BODY =
+        "<html><body><img src=\"logo.png\"><h1>Usage of ${api}</h1><table>" +
+        "<#list rows as row><tr><td>${row.path}</td><td>${row.hits}</td><td>${row.latency} ms</td></tr></#list>" +
+        "</table></body></html>";
+
+    /**
+     * Number of rows of the report, about 70 characters each.
+     */
+    @Param({ "100", "2000", "10000" })
+    public int rows;
+
+    private EmailNotifier notifier;
+    private Template template;
+    private Map<String, Object> parameters;
+
+    @Setup
+    public void setup() throws Exception {
+        final Path templates = Files.createTempDirectory("templates");
+        Files.write(templates.resolve("logo.png"), new byte[4096]);
+
+        final EmailNotifierConfiguration configuration = new EmailNotifierConfiguration();
+        configuration.setHost("127.0.0.1");
+        configuration.setPort(25);
+        configuration.setFrom("noreply@gravitee.io");
+        configuration.setTo("owner@gravitee.io");
+        configuration.setSubject("[${api}] Usage report");
+        configuration.setBody(BODY);
+
+        notifier = new EmailNotifier(configuration);
+        notifier.setTemplatesPath(templates.toString());
+        notifier.afterPropertiesSet();
+
+        template = new Template("report", BODY, new Configuration(Configuration.VERSION_2_3_28));
+
+        final List<Map<String, Object>> report = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            final Map<String, Object> row = new HashMap<>();
+            row.put("path", "/api/v1/resources/" + i);
+            row.put("hits", i * 17);
+            row.put("latency", i % 250);
+            report.add(row);
+        }
+        parameters = new HashMap<>();
+        parameters.put("api", "Echo API");
+        parameters.put("rows", report);
+    }
+
+    @Benchmark
+    public MailMessage pooledBuffer() throws Exception {
+        return notifier.prepareMailMessage(parameters);
+    }
+
+    @Benchmark
+    public String stringWriter() throws Exception {
+        final StringWriter writer = new StringWriter(BODY.length());
+        template.process(parameters, writer);
+        final String html = writer.toString();
+
+        final StringBuilder rewritten = new StringBuilder(html.length());
+        int copied = 0;
+        for (ImageReference image : ImageReferenceScanner.scan(html)) {
+            rewritten.append(html, copied, image.start()).append("cid:logo");
+            copied = image.end();
+        }
+        return rewritten.append(html, copied, html.length()).toString();
+    }
+}
@@ -0,0 +1,85 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.notifier.email;
+
+import io.gravitee.notifier.email.configuration.EmailNotifierConfiguration;
+import io.vertx.ext.mail.MailConfig;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures the small helpers called for each email: recipients splitting, MIME type extraction of data URIs and mail
+ * configuration lookup.
+ *
+ * @author GraviteeSource Team
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MailHelpersBenchmark {
+
+    @Param({ "1", "10" })
+    public int recipients;
+
+    private EmailNotifier notifier;
+    private Map<String, Object> parameters;
+    private String dataUri;
+
+    @Setup
+    public void setup() throws Exception {
+        final StringBuilder to = new StringBuilder();
+        for (int i = 0; i < recipients; i++) {
+            to.append(i % 2 == 0 ? ", " : "; ").append("user-").append(i).append("@gravitee.io");
+        }
+
+        final EmailNotifierConfiguration configuration = new EmailNotifierConfiguration();
+        configuration.setHost("smtp.gravitee.io");
+        configuration.setPort(587);
+        configuration.setUsername("user");
+        configuration.setPassword("password");
+        configuration.setStartTLSEnabled(true);
+        configuration.setTo(to.substring(2));
+
+        notifier = new EmailNotifier(configuration);
+        notifier.setTemplatesPath(Files.createTempDirectory("templates").toString());
+        notifier.afterPropertiesSet();
+
+        parameters = Collections.emptyMap();
+        dataUri = "data:image/png;base64,iVBORw0KGgoAAAANSUhEUgAAAAEAAAABCAYAAAAfFcSJAAAADUlEQVR42mNk+M9QDwADhgGAWjR9awAAAABJRU5ErkJggg==";
+    }
+
+    @Benchmark
+    public List<String> splitRecipients() {
+        return notifier.renderRecipients(parameters);
+    }
+
+    @Benchmark
+    public String extractMimeType() {
+        return EmailNotifier.extractMimeType(dataUri);
+    }
+
+    @Benchmark
+    public MailConfig prepareMailConfig() {
+        return notifier.prepareMailConfig();
+    }
+}
@@ -0,0 +1,117 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.notifier.email;
+
+import io.gravitee.notifier.email.configuration.EmailNotifierConfiguration;
+import io.vertx.ext.mail.MailMessage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures the preparation of an email: the whole {@link EmailNotifier#prepareMailMessage} (template rendering and
+ * images embedding) and the images embedding alone, with images loaded from the templates directory or inlined as data
+ * URIs.
+ *
+ * @author GraviteeSource Team
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MessagePreparationBenchmark {
+
+    public enum ImageSource {
+        FILE,
+        DATA_URI,
+    }
+
+    @Param({ "0", "3", "10" })
+    public int images;
+
+    @Param({ "FILE", "DATA_URI" })
+    public ImageSource source;
+
+    private EmailNotifier notifier;
+    private Map<String, Object> parameters;
+    private String html;
+
+    @Setup
+    public void setup() throws Exception {
+        final Path templates = Files.createTempDirectory("templates");
+        final byte[] image = image();
+        final String dataUri = "data:image/png;base64," + Base64.getEncoder().encodeToString(image);
+
+        final StringBuilder body = new StringBuilder("<html><body><p>The API <b>${api}</b> has reached its quota.</p>");
+        for (int i = 0; i < images; i++) {
+            if (source == ImageSource.FILE) {
+                Files.write(templates.resolve("logo-" + i + ".png"), image);
+                body.append("<img alt=\"logo\" src=\"logo-").append(i).append(".png\">");
+            } else {
+                body.append("<img alt=\"logo\" src=\"").append(dataUri).append("\">");
+            }
+        }
+        body.append("</body></html>");
+
+        final EmailNotifierConfiguration configuration = new EmailNotifierConfiguration();
+        configuration.setHost("127.0.0.1");
+        configuration.setPort(25);
+        configuration.setFrom("noreply@gravitee.io");
+        configuration.setTo("${owner}");
+        configuration.setSubject("[${api}] Quota reached");
+        configuration.setBody(body.toString());
+
+        notifier = new EmailNotifier(configuration);
+        notifier.setTemplatesPath(templates.toString());
+        notifier.afterPropertiesSet();
+
+        parameters = new HashMap<>();
+        parameters.put("owner", "owner@gravitee.io");
+        parameters.put("api", "Echo API");
+
+        html = body.toString().replace("${api}", "Echo API");
+    }
+
+    @Benchmark
+    public MailMessage prepareMailMessage() throws Exception {
+        return notifier.prepareMailMessage(parameters);
+    }
+
+    @Benchmark
+    public MailMessage addContentInMessage() throws Exception {
+        final MailMessage mailMessage = new MailMessage();
+        notifier.addContentInMessage(mailMessage, html);
+        return mailMessage;
+    }
+
+    /**
+     * A 4 KB image, the typical size of a logo.
+     */
+    private static byte[] image() throws IOException {
+        final byte[] image = new byte[4096];
+        for (int i = 0; i < image.length; i++) {
+            image[i] = (byte) (i * 31);
+        }
+        return image;
+    }
+}
@@ -0,0 +1,116 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.notifier.email;
+
+import com.icegreen.greenmail.util.GreenMail;
+import com.icegreen.greenmail.util.ServerSetup;
+import io.gravitee.notifier.api.Notification;
+import io.gravitee.notifier.email.configuration.EmailNotifierConfiguration;
+import io.vertx.core.Vertx;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * End-to-end throughput of {@link EmailNotifier#doSend}, from the template rendering to the SMTP transaction, against an
+ * embedded GreenMail SMTP server. Several benchmark threads send concurrently through the shared SMTP connection pool.
+ *
+ * @author GraviteeSource Team
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(4)
+@Fork(1)
+public class SendThroughputBenchmark {
+
+    private static final int SMTP_PORT = 3126;
+
+    @Param({ "0", "3" })
+    public int images;
+
+    private GreenMail greenMail;
+    private Vertx vertx;
+    private EmailNotifier notifier;
+    private Notification notification;
+    private Map<String, Object> parameters;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        greenMail = new GreenMail(new ServerSetup(SMTP_PORT, "127.0.0.1", ServerSetup.PROTOCOL_SMTP));
+        greenMail.start();
+        vertx = Vertx.vertx();
+
+        final Path templates = Files.createTempDirectory("templates");
+        final StringBuilder body = new StringBuilder("<p>The API <b>${api}</b> has reached its quota.</p>");
+        for (int i = 0; i < images; i++) {
+            Files.write(templates.resolve("logo-" + i + ".png"), new byte[4096]);
+            body.append("<img src=\"logo-").append(i).append(".png\">");
+        }
+
+        final EmailNotifierConfiguration configuration = new EmailNotifierConfiguration();
+        configuration.setHost("127.0.0.1");
+        configuration.setPort(SMTP_PORT);
+        configuration.setFrom("noreply@gravitee.io");
+        configuration.setTo("${owner}");
+        configuration.setSubject("[${api}] Quota reached");
+        configuration.setBody(body.toString());
+
+        notifier = new EmailNotifier(configuration);
+        notifier.setTemplatesPath(templates.toString());
+        notifier.afterPropertiesSet();
+
+        notification = new Notification();
+        notification.setType(EmailNotifier.TYPE);
+        parameters = Map.of("owner", "owner@gravitee.io", "api", "Echo API");
+    }
+
+    @Setup(Level.Iteration)
+    public void purge() throws Exception {
+        greenMail.purgeEmailFromAllMailboxes();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        vertx.close();
+        greenMail.stop();
+    }
+
+    @Benchmark
+    public Object send() throws Exception {
+        final CompletableFuture<Void> sent = new CompletableFuture<>();
+        vertx.runOnContext(
+            v ->
+                notifier
+                    .doSend(notification, parameters)
+                    .whenComplete(
+                        (result, throwable) -> {
+                            if (throwable != null) {
+                                sent.completeExceptionally(throwable);
+                            } else {
+                                sent.complete(result);
+                            }
+                        }
+                    )
+        );
+        return sent.get(1, TimeUnit.MINUTES);
+    }
+}
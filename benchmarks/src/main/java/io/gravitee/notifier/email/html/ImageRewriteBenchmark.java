@@ -0,0 +1,92 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.notifier.email.html;
+
+import io.gravitee.notifier.email.html.ImageReferenceScanner.ImageReference;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Compares the rewriting of the image references of a rendered email body to <code>cid:</code> URLs, using a Jsoup DOM
+ * (the former implementation) and the lexical {@link ImageReferenceScanner}.
+ *
+ * @author GraviteeSource Team
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ImageRewriteBenchmark {
+
+    private static final String CONTENT_ID = "cid:2f1d9c3e-5b0a-4c1e-9a7f-6d2b8e4f0a11";
+
+    @Param({ "0", "3", "10" })
+    public int images;
+
+    @Param({ "4", "64" })
+    public int paragraphs;
+
+    private String html;
+
+    @Setup
+    public void setup() {
+        final StringBuilder builder = new StringBuilder("<html><head><style>p { color: #333; }</style></head><body>");
+        for (int i = 0; i < images; i++) {
+            builder.append("<img alt=\"logo\" src=\"images/logo-").append(i).append(".png\" width=\"120\">");
+        }
+        for (int i = 0; i < paragraphs; i++) {
+            builder
+                .append("<p class=\"alert\">The API <b>Echo API</b> has reached its quota on plan <i>Gold</i>, ")
+                .append("see the <a href=\"https://apim.example.com/apis/echo\">dashboard</a> for details.</p>");
+        }
+        html = builder.append("</body></html>").toString();
+    }
+
+    @Benchmark
+    public String jsoup() {
+        final Document document = Jsoup.parse(html);
+        for (Element image : document.getElementsByTag("img")) {
+            if (image.hasAttr("src") && !image.attr("src").startsWith("http")) {
+                image.attr("src", CONTENT_ID);
+            }
+        }
+        return document.html();
+    }
+
+    @Benchmark
+    public String scanner() {
+        final List<ImageReference> references = ImageReferenceScanner.scan(html);
+        if (references.isEmpty()) {
+            return html;
+        }
+
+        final StringBuilder builder = new StringBuilder(html.length());
+        int copied = 0;
+        for (ImageReference reference : references) {
+            if (!reference.value(html).startsWith("http")) {
+                builder.append(html, copied, reference.start()).append(CONTENT_ID);
+                copied = reference.end();
+            }
+        }
+        return builder.append(html, copied, html.length()).toString();
+    }
+}
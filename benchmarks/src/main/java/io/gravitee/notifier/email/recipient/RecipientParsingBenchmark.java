@@ -0,0 +1,70 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.notifier.email.recipient;
+
+import static java.util.stream.Collectors.toList;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Compares the former regex split of the recipients to the {@link RecipientParser}, with and without its cache.
+ *
+ * @author GraviteeSource Team
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RecipientParsingBenchmark {
+
+    private static final String RECIPIENTS_SPLIT_REGEX = ",|;|\\s";
+
+    @Param({ "1", "10", "100" })
+    public int recipients;
+
+    private String to;
+    private RecipientParser parser;
+
+    @Setup
+    public void setup() {
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < recipients; i++) {
+            builder.append(i % 2 == 0 ? ", " : "; ").append("user-").append(i).append("@gravitee.io");
+        }
+        to = builder.substring(2);
+        parser = new RecipientParser(64);
+    }
+
+    @Benchmark
+    public List<String> regexSplit() {
+        return Arrays.stream(to.split(RECIPIENTS_SPLIT_REGEX)).collect(toList());
+    }
+
+    @Benchmark
+    public List<String> tokenize() {
+        return RecipientParser.tokenize(to);
+    }
+
+    @Benchmark
+    public List<String> parseCached() {
+        return parser.parse(to);
+    }
+}
@@ -0,0 +1,94 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.notifier.email.resource;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.ext.mail.MailMessage;
+import io.vertx.ext.mail.mailencoder.MailEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures the MIME encoding of an email embedding a shared inline image, as done by the mail client for every sent
+ * email, and the share of that work spent base64-encoding the image, which a pre-encoded attachment would avoid.
+ *
+ * @author GraviteeSource Team
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InlineAttachmentEncodingBenchmark {
+
+    private static final String HOSTNAME = "localhost";
+
+    @Param({ "4096", "65536" })
+    public int imageSize;
+
+    private MailMessage withImage;
+    private MailMessage withoutImage;
+    private Buffer image;
+    private byte[] encodedImage;
+
+    @Setup
+    public void setup() {
+        final byte[] bytes = new byte[imageSize];
+        new Random(42).nextBytes(bytes);
+        image = Buffer.buffer(bytes);
+
+        final InlineAttachmentCache.InlineAttachment attachment = new InlineAttachmentCache(Long.MAX_VALUE).get("image/png", image);
+        withoutImage = new MailMessage()
+            .setFrom("noreply@gravitee.io")
+            .setTo("user@gravitee.io")
+            .setSubject("API Echo has reached its quota")
+            .setHtml("<html><body><img src=\"cid:" + attachment.getContentId() + "\"><p>The API has reached its quota.</p></body></html>");
+        withImage = new MailMessage(withoutImage).setInlineAttachment(attachment.getAttachment());
+        encodedImage = mimeEncode(image).getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * What the mail client does today for every email.
+     */
+    @Benchmark
+    public String encodeMessage() {
+        return new MailEncoder(withImage, HOSTNAME).encode();
+    }
+
+    /**
+     * The same email if the encoded image could be written as is: only the rest of the message is encoded.
+     */
+    @Benchmark
+    public int encodeMessageWithPreEncodedImage() {
+        return new MailEncoder(withoutImage, HOSTNAME).encode().length() + encodedImage.length;
+    }
+
+    /**
+     * The base64 encoding of the image alone.
+     */
+    @Benchmark
+    public String encodeImage() {
+        return mimeEncode(image);
+    }
+
+    private static String mimeEncode(final Buffer data) {
+        return Base64.getMimeEncoder().encodeToString(data.getBytes());
+    }
+}
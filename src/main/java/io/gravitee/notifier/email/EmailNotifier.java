@@ -15,38 +15,73 @@
  */
 package io.gravitee.notifier.email;
 
-import static io.vertx.core.buffer.Buffer.buffer;
-import static io.vertx.ext.mail.MailClient.createShared;
-import static java.lang.String.valueOf;
-import static java.nio.file.Files.readAllBytes;
-import static java.util.stream.Collectors.toList;
-
 import freemarker.cache.FileTemplateLoader;
+import freemarker.cache.TemplateLoader;
 import freemarker.core.TemplateClassResolver;
 import freemarker.template.Configuration;
-import io.gravitee.common.utils.UUID;
+import freemarker.template.TemplateException;
 import io.gravitee.notifier.api.AbstractConfigurableNotifier;
 import io.gravitee.notifier.api.Notification;
+import io.gravitee.notifier.email.client.MailClientRegistry;
+import io.gravitee.notifier.email.client.MailClientRegistry.PooledMailClient;
+import io.gravitee.notifier.email.client.RelayBalancer;
+import io.gravitee.notifier.email.client.SmtpSettings;
 import io.gravitee.notifier.email.configuration.EmailNotifierConfiguration;
+import io.gravitee.notifier.email.dispatch.CircuitBreaker;
+import io.gravitee.notifier.email.dispatch.CircuitOpenException;
+import io.gravitee.notifier.email.dispatch.Coalescer;
+import io.gravitee.notifier.email.dispatch.Deadline;
+import io.gravitee.notifier.email.dispatch.DispatchQueue;
+import io.gravitee.notifier.email.dispatch.RateLimiters;
+import io.gravitee.notifier.email.dispatch.RetryPolicy;
+import io.gravitee.notifier.email.dispatch.SendTimeoutException;
+import io.gravitee.notifier.email.dispatch.SmtpFailures;
+import io.gravitee.notifier.email.dispatch.TokenBucket;
+import io.gravitee.notifier.email.html.DataUri;
+import io.gravitee.notifier.email.html.ImageReferenceScanner;
+import io.gravitee.notifier.email.html.ImageReferenceScanner.ImageReference;
+import io.gravitee.notifier.email.metrics.EmailMetrics;
+import io.gravitee.notifier.email.recipient.RecipientParser;
+import io.gravitee.notifier.email.resource.FileAttachment;
+import io.gravitee.notifier.email.resource.ImageResourceCache;
+import io.gravitee.notifier.email.resource.InlineAttachmentCache;
+import io.gravitee.notifier.email.resource.InlineAttachmentCache.InlineAttachment;
+import io.gravitee.notifier.email.spool.MailSpool;
+import io.gravitee.notifier.email.spool.SpoolReplayer;
+import io.gravitee.notifier.email.template.TemplateCache;
+import io.gravitee.notifier.email.template.VariableUsage;
+import io.gravitee.notifier.email.template.WatchingTemplateLoader;
+import io.gravitee.notifier.email.template.WriterPool;
+import io.gravitee.notifier.email.template.WriterPool.PooledWriter;
+import io.gravitee.notifier.email.worker.BlockingExecutor;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
 import io.vertx.core.Vertx;
 import io.vertx.ext.mail.*;
-import io.vertx.ext.mail.impl.MailAttachmentImpl;
 import java.io.File;
 import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
 import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import javax.activation.MimetypesFileTypeMap;
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
-import org.jsoup.nodes.Element;
-import org.jsoup.select.Elements;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 
 /**
@@ -58,44 +93,314 @@ public class EmailNotifier extends AbstractConfigurableNotifier<EmailNotifierCon
 
     private static final Logger LOGGER = LoggerFactory.getLogger(EmailNotifier.class);
 
-    private static final String RECIPIENTS_SPLIT_REGEX = ",|;|\\s";
-
     static final String TYPE = "email-notifier";
 
+    static final String RECIPIENT_PARAMETER = "recipient";
+
+    private static final String RECIPIENT_PLACEHOLDER = "\u0000recipient\u0000";
+
+    private static final int DEFAULT_FAN_OUT_CONCURRENCY = 4;
+
+    private static final long DEFAULT_IDLE_EVICTION_TIMEOUT = TimeUnit.MINUTES.toMillis(5);
+
+    private static final int DEFAULT_ATTACHMENT_MAX_SIZE = 10 * 1024 * 1024;
+
+    /**
+     * Notifiers are instantiated for each notification, so FreeMarker configurations and compiled templates are shared
+     * between instances to pay the template parsing cost only once.
+     */
+    private static final ConcurrentMap<String, Configuration> CONFIGURATIONS = new ConcurrentHashMap<>();
+
+    static final TemplateCache TEMPLATE_CACHE = new TemplateCache(256);
+
+    /**
+     * Buffers the email bodies are rendered and rewritten into.
+     */
+    static final WriterPool WRITERS = new WriterPool(16, 1024 * 1024);
+
+    static final ImageResourceCache IMAGE_CACHE = new ImageResourceCache(10 * 1024 * 1024);
+
+    private static final RecipientParser RECIPIENTS = new RecipientParser(64);
+
+    static final InlineAttachmentCache INLINE_ATTACHMENTS = new InlineAttachmentCache(10 * 1024 * 1024);
+
+    static final MailClientRegistry MAIL_CLIENTS = new MailClientRegistry();
+
+    static final DispatchQueue DISPATCH_QUEUE = new DispatchQueue(10000, 100, DispatchQueue.OverflowPolicy.REJECT, 5000);
+
+    static final RateLimiters RATE_LIMITERS = new RateLimiters();
+
+    static final RelayBalancer RELAYS = new RelayBalancer(CircuitBreaker.Config.defaults(), 10000);
+
+    static final EmailMetrics METRICS = new EmailMetrics(DISPATCH_QUEUE, MAIL_CLIENTS);
+
+    static final Coalescer COALESCER = new Coalescer(10000);
+
+    /**
+     * Renders the templates and loads the images out of the event loop.
+     */
+    static final BlockingExecutor PREPARATION_EXECUTOR = new BlockingExecutor(
+        "gravitee-notifier-email-preparation",
+        4,
+        BlockingExecutor.Type.WORKER
+    );
+
+    /**
+     * Emails which could not be delivered because of a transient failure, <code>null</code> if the spool is disabled.
+     */
+    static volatile MailSpool SPOOL;
+
+    private static final AtomicBoolean SPOOL_REPLAYER_STARTED = new AtomicBoolean();
+
+    private static final AtomicBoolean SHUTDOWN_HOOK_REGISTERED = new AtomicBoolean();
+
     @Value("${notifiers.email.templates.path:${gravitee.home}/templates}")
     private String templatesPath;
 
-    private final Configuration config = new Configuration(Configuration.VERSION_2_3_28);
+    @Value("${notifiers.email.attachments.path:${gravitee.home}/attachments}")
+    private String attachmentsPath;
+
+    @Value("${notifiers.email.templates.cache.maxSize:256}")
+    private int templateCacheMaxSize = 256;
+
+    @Value("${notifiers.email.templates.images.cache.maxBytes:10485760}")
+    private long imageCacheMaxBytes = 10 * 1024 * 1024;
+
+    @Value("${notifiers.email.templates.images.attachments.maxBytes:10485760}")
+    private long inlineAttachmentCacheMaxBytes = 10 * 1024 * 1024;
+
+    @Value("${notifiers.email.templates.buffers.maxPooled:16}")
+    private int bufferPoolMaxSize = 16;
+
+    @Value("${notifiers.email.templates.buffers.maxCapacity:1048576}")
+    private int bufferPoolMaxCapacity = 1024 * 1024;
+
+    @Value("${notifiers.email.templates.watch.enabled:true}")
+    private boolean templatesWatchEnabled = true;
+
+    @Value("${notifiers.email.templates.watch.debounce:500}")
+    private long templatesWatchDebounce = 500;
+
+    @Value("${notifiers.email.queue.capacity:10000}")
+    private int queueCapacity = 10000;
+
+    @Value("${notifiers.email.queue.maxInFlight:100}")
+    private int queueMaxInFlight = 100;
+
+    @Value("${notifiers.email.queue.overflowPolicy:REJECT}")
+    private String queueOverflowPolicy = "REJECT";
+
+    @Value("${notifiers.email.queue.blockTimeout:5000}")
+    private long queueBlockTimeout = 5000;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    @Value("${notifiers.email.coalescing.maxWindows:10000}")
+    private int coalescingMaxWindows = 10000;
+
+    @Value("${notifiers.email.preparation.executor:WORKER}")
+    private String preparationExecutor = "WORKER";
+
+    @Value("${notifiers.email.preparation.poolSize:4}")
+    private int preparationPoolSize = 4;
+
+    @Value("${notifiers.email.spool.enabled:false}")
+    private boolean spoolEnabled;
+
+    @Value("${notifiers.email.spool.path:${gravitee.home}/spool/email}")
+    private String spoolPath;
+
+    @Value("${notifiers.email.spool.segmentSize:16777216}")
+    private int spoolSegmentSize = 16 * 1024 * 1024;
+
+    @Value("${notifiers.email.spool.replayInterval:30000}")
+    private long spoolReplayInterval = 30000;
+
+    @Value("${notifiers.email.spool.maxReplayInterval:600000}")
+    private long spoolMaxReplayInterval = 600000;
+
+    @Value("${notifiers.email.circuitBreaker.windowSize:20}")
+    private int circuitBreakerWindowSize = 20;
+
+    @Value("${notifiers.email.circuitBreaker.minimumCalls:10}")
+    private int circuitBreakerMinimumCalls = 10;
+
+    @Value("${notifiers.email.circuitBreaker.failureRateThreshold:50}")
+    private float circuitBreakerFailureRateThreshold = 50;
+
+    @Value("${notifiers.email.circuitBreaker.slowCallRateThreshold:80}")
+    private float circuitBreakerSlowCallRateThreshold = 80;
+
+    @Value("${notifiers.email.circuitBreaker.slowCallDuration:10000}")
+    private long circuitBreakerSlowCallDuration = 10000;
+
+    @Value("${notifiers.email.circuitBreaker.waitDuration:30000}")
+    private long circuitBreakerWaitDuration = 30000;
+
+    @Value("${notifiers.email.circuitBreaker.halfOpenCalls:3}")
+    private int circuitBreakerHalfOpenCalls = 3;
+
+    @Value("${notifiers.email.relays.probeInterval:10000}")
+    private long relayProbeInterval = 10000;
+
+    private Configuration config;
+
+    private volatile SmtpSettings settings;
 
     public EmailNotifier(EmailNotifierConfiguration configuration) {
         super(TYPE, configuration);
     }
 
     public void afterPropertiesSet() throws IOException {
-        config.setNewBuiltinClassResolver(TemplateClassResolver.SAFER_RESOLVER);
-        config.setTemplateLoader(new FileTemplateLoader(new File(URLDecoder.decode(templatesPath, StandardCharsets.UTF_8))));
+        try {
+            config =
+                CONFIGURATIONS.computeIfAbsent(
+                    templatesPath,
+                    path -> createConfiguration(path, templatesWatchEnabled, templatesWatchDebounce)
+                );
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+        TEMPLATE_CACHE.setMaximumSize(templateCacheMaxSize);
+        WRITERS.configure(bufferPoolMaxSize, bufferPoolMaxCapacity);
+        IMAGE_CACHE.setMaximumBytes(imageCacheMaxBytes);
+        INLINE_ATTACHMENTS.setMaximumBytes(inlineAttachmentCacheMaxBytes);
+        DISPATCH_QUEUE.configure(
+            queueCapacity,
+            queueMaxInFlight,
+            DispatchQueue.OverflowPolicy.valueOf(queueOverflowPolicy.toUpperCase()),
+            queueBlockTimeout
+        );
+        COALESCER.setMaximumSize(coalescingMaxWindows);
+        if (meterRegistry != null) {
+            METRICS.setMeterRegistry(meterRegistry);
+        }
+        PREPARATION_EXECUTOR.configure(preparationPoolSize, BlockingExecutor.Type.valueOf(preparationExecutor.toUpperCase()));
+        RELAYS.configure(
+            new CircuitBreaker.Config(
+                circuitBreakerWindowSize,
+                circuitBreakerMinimumCalls,
+                circuitBreakerFailureRateThreshold,
+                circuitBreakerSlowCallRateThreshold,
+                circuitBreakerSlowCallDuration,
+                circuitBreakerWaitDuration,
+                circuitBreakerHalfOpenCalls
+            ),
+            relayProbeInterval
+        );
+        RELAYS.setListener((relay, from, to) -> METRICS.relay(relay.getHost() + ':' + relay.getPort()).circuitTransition(to));
+        MAIL_CLIENTS.setEvictionListener(RELAYS::evict);
+        if (spoolEnabled && SPOOL == null) {
+            openSpool(spoolPath, spoolSegmentSize);
+        }
+        if (SHUTDOWN_HOOK_REGISTERED.compareAndSet(false, true)) {
+            Runtime.getRuntime().addShutdownHook(new Thread(EmailNotifier::shutdown, "gravitee-notifier-email-shutdown"));
+        }
+    }
+
+    /**
+     * Release the resources shared by the notifiers. Notifiers are instantiated for each notification, so this is not
+     * tied to the lifecycle of a notifier but run when the JVM stops.
+     */
+    static void shutdown() {
+        MAIL_CLIENTS.closeAll();
+        PREPARATION_EXECUTOR.close();
+        final MailSpool spool = SPOOL;
+        if (spool != null) {
+            spool.close();
+        }
+    }
+
+    private static synchronized void openSpool(final String path, final int segmentSize) throws IOException {
+        if (SPOOL == null) {
+            SPOOL = new MailSpool(Paths.get(URLDecoder.decode(path, StandardCharsets.UTF_8)), segmentSize);
+        }
+    }
+
+    private static Configuration createConfiguration(final String templatesPath, final boolean watch, final long debounce) {
+        final Configuration configuration = new Configuration(Configuration.VERSION_2_3_28);
+        configuration.setNewBuiltinClassResolver(TemplateClassResolver.SAFER_RESOLVER);
+        final File directory = new File(URLDecoder.decode(templatesPath, StandardCharsets.UTF_8));
+        try {
+            if (watch) {
+                try {
+                    configuration.setTemplateLoader(new WatchingTemplateLoader(directory.toPath(), debounce, IMAGE_CACHE::invalidate));
+                    // Looking a template up is a memory access, changes are visible as soon as they are reported
+                    configuration.setTemplateUpdateDelayMilliseconds(0);
+                    return configuration;
+                } catch (IOException ioe) {
+                    LOGGER.warn("Unable to watch templates directory {}, templates are checked for changes on use", directory, ioe);
+                }
+            }
+            configuration.setTemplateLoader(new FileTemplateLoader(directory));
+        } catch (IOException ioe) {
+            throw new UncheckedIOException(ioe);
+        }
+        return configuration;
+    }
+
+    /**
+     * @return <code>true</code> if the changes of the given file are reported, so that it does not need to be checked
+     * before each use
+     */
+    private boolean isWatched(final Path path) {
+        final TemplateLoader loader = config.getTemplateLoader();
+        return loader instanceof WatchingTemplateLoader && ((WatchingTemplateLoader) loader).watches(path);
     }
 
     @Override
     public CompletableFuture<Void> doSend(final Notification notification, final Map<String, Object> parameters) {
+        final long start = System.nanoTime();
         final CompletableFuture<Void> future = new CompletableFuture<>();
         try {
-            final MailMessage mailMessage = prepareMailMessage(parameters);
-            final MailConfig mailConfig = prepareMailConfig();
-
-            createShared(Vertx.currentContext().owner(), mailConfig, valueOf(mailConfig.getHostname().hashCode()))
-                .sendMail(
-                    mailMessage,
-                    e -> {
-                        if (e.succeeded()) {
-                            LOGGER.debug("Email {) has been send successfully! " + e.result().getMessageID());
-                            future.complete(null);
-                        } else {
-                            LOGGER.error("An error occurs while sending email", e.cause());
-                            future.completeExceptionally(e.cause());
-                        }
+            final Vertx vertx = Vertx.currentContext().owner();
+            final SmtpSettings settings = settings();
+            final Deadline deadline = Deadline.after(configuration.getDeadline());
+
+            // Messages are prepared on a worker, only the SMTP exchange runs on the caller context
+            final Future<?> sent;
+            if (configuration.isPerRecipient()) {
+                final int concurrency = configuration.getFanOutConcurrency() > 0
+                    ? configuration.getFanOutConcurrency()
+                    : DEFAULT_FAN_OUT_CONCURRENCY;
+                sent =
+                    PREPARATION_EXECUTOR
+                        .execute(vertx, () -> preparePersonalizedMailMessages(parameters))
+                        .compose(mailMessages -> new FanOut(vertx, settings, deadline, mailMessages, concurrency).send());
+            } else {
+                sent =
+                    PREPARATION_EXECUTOR
+                        .execute(vertx, () -> prepareMailMessage(parameters))
+                        .compose(mailMessage -> {
+                            // A digest only keeps the bodies and the inline images
+                            if (configuration.getCoalescingWindow() > 0 && mailMessage.getAttachment() == null) {
+                                // Only the first email of a window is sent within the deadline of its notification, the
+                                // others complete once held, and the digest is sent whenever the window ends
+                                return COALESCER.send(
+                                    vertx,
+                                    TimeUnit.SECONDS.toMillis(configuration.getCoalescingWindow()),
+                                    mailMessage,
+                                    configuration.getBody(),
+                                    settings.id(),
+                                    coalesced -> sendMail(vertx, settings, coalesced, coalesced == mailMessage ? deadline : Deadline.NONE)
+                                );
+                            }
+                            return sendMail(vertx, settings, mailMessage, deadline).mapEmpty();
+                        });
+            }
+
+            deadline
+                .bound(vertx, sent)
+                .onComplete(e -> {
+                    metrics().recordSend(start);
+                    if (e.succeeded()) {
+                        future.complete(null);
+                    } else {
+                        LOGGER.error("An error occurs while sending email", e.cause());
+                        future.completeExceptionally(e.cause());
                     }
-                );
+                });
         } catch (final Exception ex) {
             LOGGER.error("Error while sending email notification", ex);
             future.completeExceptionally(ex);
@@ -103,11 +408,514 @@ public class EmailNotifier extends AbstractConfigurableNotifier<EmailNotifierCon
         return future;
     }
 
+    /**
+     * Send a batch of notifications. Emails targeting the same SMTP server are sent one after the other over the same
+     * pooled connection, so the connection and its authentication are reused for the whole group. Within each email, the
+     * commands are pipelined when the server advertises PIPELINING (see the pipelining setting). When relays are
+     * configured, the group is sent through a single relay, retries going through any relay. The notifier deadline
+     * applies to the whole batch. In per-recipient mode, each recipient of a notification gets its own email and the
+     * notification fails if any of its emails does. The returned future always completes normally, once every email has
+     * been sent or has failed.
+     *
+     * @param notifications the notifications to send
+     * @param parameters the parameters of each notification, in the same order
+     * @return the outcome of each notification, in the same order
+     */
+    public CompletableFuture<List<SendResult>> sendAll(final List<Notification> notifications, final List<Map<String, Object>> parameters) {
+        if (notifications.size() != parameters.size()) {
+            throw new IllegalArgumentException("Each notification must come with its parameters");
+        }
+
+        final Vertx vertx = Vertx.currentContext().owner();
+        final RetryPolicy retryPolicy = RetryPolicy.of(configuration);
+        final Deadline deadline = Deadline.after(configuration.getDeadline());
+        final SendResult[] results = new SendResult[notifications.size()];
+        final List<MailMessage> mailMessages = new ArrayList<>(notifications.size());
+        final List<Integer> owners = new ArrayList<>(notifications.size());
+
+        final CompletableFuture<List<SendResult>> future = new CompletableFuture<>();
+        PREPARATION_EXECUTOR
+            .execute(vertx, () -> prepareMailMessages(notifications, parameters, mailMessages, owners, results))
+            .compose(groups -> {
+                startSpoolReplayer(vertx);
+                final List<Future<Void>> groupsSent = new ArrayList<>(groups.size());
+                groups.forEach((settings, indexes) -> {
+                    final RelayBalancer.Relay relay = RELAYS.select(settings);
+                    final PooledMailClient mailClient = MAIL_CLIENTS.acquire(
+                        vertx,
+                        relay.getSettings(),
+                        TimeUnit.SECONDS.toMillis(configuration.getIdleEvictionTimeout())
+                    );
+                    final TokenBucket bucket = RATE_LIMITERS.get(settings, configuration.getRateLimit(), configuration.getRateLimitBurst());
+                    final Promise<Void> groupSent = Promise.promise();
+                    sendSequentially(
+                        vertx,
+                        retryPolicy,
+                        deadline,
+                        settings,
+                        bucket,
+                        relay,
+                        mailClient,
+                        indexes.iterator(),
+                        notifications,
+                        mailMessages,
+                        owners,
+                        results,
+                        groupSent
+                    );
+                    groupsSent.add(groupSent.future().onComplete(v -> mailClient.release()));
+                });
+                return CompositeFuture.join(new ArrayList<>(groupsSent));
+            })
+            .onComplete(e -> {
+                if (e.failed()) {
+                    LOGGER.error("An error occurs while sending emails", e.cause());
+                    // The notifications not processed yet fail with the cause of the whole batch
+                    for (int i = 0; i < results.length; i++) {
+                        if (results[i] == null) {
+                            results[i] = SendResult.failure(notifications.get(i), e.cause());
+                        }
+                    }
+                }
+                future.complete(Arrays.asList(results));
+            });
+        return future;
+    }
+
+    /**
+     * Prepare the messages of a batch, grouped by SMTP settings. The notifications which can not be prepared are
+     * directly reported as failed.
+     *
+     * @param mailMessages filled with the prepared messages
+     * @param owners filled with the index of the notification of each prepared message
+     * @return the indexes of the prepared messages, grouped by SMTP settings
+     */
+    private Map<SmtpSettings, List<Integer>> prepareMailMessages(
+        final List<Notification> notifications,
+        final List<Map<String, Object>> parameters,
+        final List<MailMessage> mailMessages,
+        final List<Integer> owners,
+        final SendResult[] results
+    ) {
+        final Map<SmtpSettings, List<Integer>> groups = new LinkedHashMap<>();
+        for (int i = 0; i < notifications.size(); i++) {
+            if (!TYPE.equals(notifications.get(i).getType())) {
+                results[i] = SendResult.failure(notifications.get(i), new IllegalArgumentException("Unsupported notification type"));
+                continue;
+            }
+            try {
+                final List<MailMessage> prepared = configuration.isPerRecipient()
+                    ? preparePersonalizedMailMessages(parameters.get(i))
+                    : Collections.singletonList(prepareMailMessage(parameters.get(i)));
+                final List<Integer> group = groups.computeIfAbsent(settings(), settings -> new ArrayList<>());
+                for (final MailMessage mailMessage : prepared) {
+                    group.add(mailMessages.size());
+                    mailMessages.add(mailMessage);
+                    owners.add(i);
+                }
+            } catch (final Exception ex) {
+                LOGGER.error("Error while preparing email notification", ex);
+                results[i] = SendResult.failure(notifications.get(i), ex);
+            }
+        }
+        return groups;
+    }
+
+    private void sendSequentially(
+        final Vertx vertx,
+        final RetryPolicy retryPolicy,
+        final Deadline deadline,
+        final SmtpSettings settings,
+        final TokenBucket bucket,
+        final RelayBalancer.Relay relay,
+        final PooledMailClient mailClient,
+        final Iterator<Integer> indexes,
+        final List<Notification> notifications,
+        final List<MailMessage> mailMessages,
+        final List<Integer> owners,
+        final SendResult[] results,
+        final Promise<Void> promise
+    ) {
+        if (!indexes.hasNext()) {
+            promise.complete();
+            return;
+        }
+
+        final int index = indexes.next();
+        final MailMessage mailMessage = mailMessages.get(index);
+        final int owner = owners.get(index);
+        final int[] attempts = new int[1];
+        metrics().recordMessage(mailMessage);
+        retryPolicy
+            .execute(
+                vertx,
+                deadline,
+                attempt -> {
+                    attempts[0] = attempt;
+                    if (attempt > 1) {
+                        metrics().retry();
+                        // The relay of the group may be the cause of the failure, let the balancer choose
+                        return deliver(
+                            vertx,
+                            settings,
+                            bucket,
+                            mailMessage,
+                            TimeUnit.SECONDS.toMillis(configuration.getIdleEvictionTimeout()),
+                            deadline
+                        );
+                    }
+                    return throttle(vertx, bucket)
+                        .compose(v ->
+                            DISPATCH_QUEUE.submit(
+                                vertx,
+                                () ->
+                                    deadline.isExpired()
+                                        ? Future.<MailResult>failedFuture(deadline.exceeded())
+                                        : relay.send(vertx, () -> sendMail(vertx, mailClient, mailMessage, deadline))
+                            )
+                        );
+                }
+            )
+            .recover(spoolOnTransientFailure(vertx, settings, mailMessage))
+            .onComplete(e -> {
+                recordOutcome(e.succeeded() ? null : e.cause());
+                if (e.succeeded()) {
+                    // A notification sent to several recipients keeps the first message id
+                    if (results[owner] == null) {
+                        results[owner] = SendResult.success(notifications.get(owner), e.result().getMessageID(), attempts[0]);
+                    }
+                } else {
+                    LOGGER.error("An error occurs while sending email to {}", mailMessage.getTo(), e.cause());
+                    // A notification sent to several recipients keeps the first failure
+                    if (results[owner] == null || results[owner].succeeded()) {
+                        results[owner] = SendResult.failure(notifications.get(owner), e.cause(), attempts[0]);
+                    }
+                }
+                sendSequentially(
+                    vertx,
+                    retryPolicy,
+                    deadline,
+                    settings,
+                    bucket,
+                    relay,
+                    mailClient,
+                    indexes,
+                    notifications,
+                    mailMessages,
+                    owners,
+                    results,
+                    promise
+                );
+            });
+    }
+
+    private Future<MailResult> sendMail(
+        final Vertx vertx,
+        final SmtpSettings settings,
+        final MailMessage mailMessage,
+        final Deadline deadline
+    ) {
+        startSpoolReplayer(vertx);
+        final long idleEvictionTimeout = TimeUnit.SECONDS.toMillis(configuration.getIdleEvictionTimeout());
+        final TokenBucket bucket = RATE_LIMITERS.get(settings, configuration.getRateLimit(), configuration.getRateLimitBurst());
+        metrics().recordMessage(mailMessage);
+        return RetryPolicy
+            .of(configuration)
+            .execute(
+                vertx,
+                deadline,
+                attempt -> {
+                    if (attempt > 1) {
+                        metrics().retry();
+                    }
+                    return deliver(vertx, settings, bucket, mailMessage, idleEvictionTimeout, deadline);
+                }
+            )
+            .recover(spoolOnTransientFailure(vertx, settings, mailMessage))
+            .onComplete(e -> recordOutcome(e.succeeded() ? null : e.cause()));
+    }
+
+    private EmailMetrics.HostMetrics metrics() {
+        return METRICS.host(configuration.getHost());
+    }
+
+    private void recordOutcome(final Throwable failure) {
+        final EmailMetrics.HostMetrics metrics = metrics();
+        if (failure == null) {
+            metrics.success();
+            return;
+        }
+        metrics.failure();
+        for (Throwable cause = failure; cause != null && cause.getCause() != cause; cause = cause.getCause()) {
+            // Also a rejection, but by the relay rather than by the dispatch queue
+            if (cause instanceof CircuitOpenException) {
+                metrics.circuitOpen();
+                return;
+            }
+            if (cause instanceof RejectedExecutionException) {
+                metrics.rejected();
+                return;
+            }
+        }
+    }
+
+    private static Future<MailResult> deliver(
+        final Vertx vertx,
+        final SmtpSettings settings,
+        final TokenBucket bucket,
+        final MailMessage mailMessage,
+        final long idleEvictionTimeout,
+        final Deadline deadline
+    ) {
+        return throttle(vertx, bucket)
+            .compose(v ->
+                DISPATCH_QUEUE.submit(
+                    vertx,
+                    () -> {
+                        // Waited too long for the rate limit or the queue, the relay is not to blame
+                        if (deadline.isExpired()) {
+                            return Future.failedFuture(deadline.exceeded());
+                        }
+                        final RelayBalancer.Relay relay = RELAYS.select(settings);
+                        final PooledMailClient mailClient = MAIL_CLIENTS.acquire(vertx, relay.getSettings(), idleEvictionTimeout);
+                        return relay
+                            .send(vertx, () -> sendMail(vertx, mailClient, mailMessage, deadline))
+                            .onComplete(e -> mailClient.release());
+                    }
+                )
+            )
+            .onSuccess(result -> LOGGER.debug("Email {} has been sent successfully", result.getMessageID()));
+    }
+
+    /**
+     * Wait for the rate limit of the SMTP account, if any, before sending.
+     */
+    private static Future<Void> throttle(final Vertx vertx, final TokenBucket bucket) {
+        return bucket == null ? Future.succeededFuture() : bucket.acquire(vertx);
+    }
+
+    /**
+     * When the spool is enabled, an email which failed with a transient error is written to the spool to be replayed
+     * later, and the send is considered successful. The email is encoded and written out of the event loop.
+     */
+    private static Function<Throwable, Future<MailResult>> spoolOnTransientFailure(
+        final Vertx vertx,
+        final SmtpSettings settings,
+        final MailMessage mailMessage
+    ) {
+        return failure -> {
+            final MailSpool spool = SPOOL;
+            if (spool == null || !SmtpFailures.isTransient(failure)) {
+                return Future.failedFuture(failure);
+            }
+            return PREPARATION_EXECUTOR
+                .execute(
+                    vertx,
+                    () -> {
+                        spool.append(settings.id(), mailMessage);
+                        return new MailResult();
+                    }
+                )
+                .onSuccess(result ->
+                    LOGGER.warn(
+                        "Unable to send email to {}, it has been spooled to be sent later: {}",
+                        mailMessage.getTo(),
+                        failure.getMessage()
+                    )
+                )
+                .recover(ex -> {
+                    LOGGER.error("Unable to spool email to {}", mailMessage.getTo(), ex);
+                    return Future.failedFuture(failure);
+                });
+        };
+    }
+
+    private void startSpoolReplayer(final Vertx vertx) {
+        final MailSpool spool = SPOOL;
+        if (spool == null || !SPOOL_REPLAYER_STARTED.compareAndSet(false, true)) {
+            return;
+        }
+
+        new SpoolReplayer(
+            vertx,
+            spool,
+            target -> RELAYS.findSettings(target) != null,
+            mail -> {
+                // Spooled emails only reference their settings, they can be replayed once a notifier has used them again
+                final SmtpSettings settings = RELAYS.findSettings(mail.getTarget());
+                if (settings == null) {
+                    return Future.failedFuture(new RejectedExecutionException("SMTP settings of the spooled email are not available"));
+                }
+                return deliver(
+                    vertx,
+                    settings,
+                    RATE_LIMITERS.find(settings),
+                    mail.getMailMessage(),
+                    DEFAULT_IDLE_EVICTION_TIMEOUT,
+                    Deadline.NONE
+                );
+            },
+            spoolReplayInterval,
+            spoolMaxReplayInterval
+        )
+            .start();
+    }
+
+    /**
+     * Run the SMTP transaction of an email, failing with a {@link SendTimeoutException} once the send timeout or the
+     * deadline is reached. The transaction itself is not interrupted: a stalled connection is closed by the idle timeout,
+     * and the email is neither retried nor spooled since it may still be delivered. Attached
+     * files are streamed from the disk, opened again for each transaction.
+     */
+    private static Future<MailResult> sendMail(
+        final Vertx vertx,
+        final PooledMailClient mailClient,
+        final MailMessage mailMessage,
+        final Deadline deadline
+    ) {
+        final long start = System.nanoTime();
+        final SmtpSettings settings = mailClient.getSettings();
+        final Promise<MailResult> promise = Promise.promise();
+        FileAttachment
+            .open(vertx, mailMessage)
+            .onFailure(promise::tryFail)
+            .onSuccess(opened -> {
+                try {
+                    mailClient
+                        .getClient()
+                        .sendMail(
+                            opened,
+                            e -> {
+                                // The files are read until the end of the transaction, even once timed out
+                                FileAttachment.close(opened);
+                                if (e.succeeded()) {
+                                    promise.tryComplete(e.result());
+                                } else {
+                                    promise.tryFail(e.cause());
+                                }
+                            }
+                        );
+                } catch (final RuntimeException ex) {
+                    FileAttachment.close(opened);
+                    promise.tryFail(ex);
+                }
+            });
+
+        final long timeout = Math.min(settings.getSendTimeout() > 0 ? settings.getSendTimeout() : Long.MAX_VALUE, deadline.remaining());
+        final Future<MailResult> sent = timeout == Long.MAX_VALUE
+            ? promise.future()
+            : Deadline.timeout(
+                vertx,
+                promise.future(),
+                timeout,
+                () -> new SendTimeoutException("Sending email to " + settings.getHost() + " timed out after " + timeout + " ms")
+            );
+        return sent.onComplete(e -> METRICS.host(settings.getHost()).recordSmtp(start));
+    }
+
     MailMessage prepareMailMessage(final Map<String, Object> parameters) throws Exception {
+        final MailMessage mailMessage = new MailMessage()
+            .setFrom(render(configuration.getFrom(), parameters))
+            .setTo(renderRecipients(parameters));
+
+        mailMessage.setSubject(render(configuration.getSubject(), parameters));
+        try (PooledWriter body = WRITERS.acquire()) {
+            addContentInMessage(mailMessage, render(configuration.getBody(), parameters, body));
+        }
+        mailMessage.setAttachment(prepareAttachments(parameters));
+
+        return mailMessage;
+    }
+
+    /**
+     * Reference the files to attach, whose paths are rendered from the attachment templates. The files are only read
+     * when the email is sent.
+     *
+     * @return the attachments, or <code>null</code> if there is none
+     */
+    List<MailAttachment> prepareAttachments(final Map<String, Object> parameters) throws Exception {
+        final List<String> templates = configuration.getAttachments();
+        if (templates == null || templates.isEmpty()) {
+            return null;
+        }
+
+        final long maxSize = configuration.getAttachmentMaxSize() > 0 ? configuration.getAttachmentMaxSize() : DEFAULT_ATTACHMENT_MAX_SIZE;
+        final List<MailAttachment> attachments = new ArrayList<>(templates.size());
+        for (final String template : templates) {
+            final String file = render(template, parameters);
+            // Optional attachments are rendered as empty strings
+            if (file != null && !file.trim().isEmpty()) {
+                attachments.add(FileAttachment.of(Paths.get(attachmentsPath), file.trim(), maxSize));
+            }
+        }
+        return attachments.isEmpty() ? null : attachments;
+    }
+
+    /**
+     * Prepare one message per recipient. The sender, subject and body are rendered once, with a placeholder as the
+     * <code>recipient</code> parameter, and the inline images and attached files are shared by all the messages. Each
+     * message then only substitutes its recipient to the placeholder.
+     *
+     * This requires the templates to only output the recipient verbatim, through plain <code>${recipient}</code>
+     * interpolations, and the attachments not to depend on it. Otherwise (e.g. <code>${recipient?upper_case}</code> or
+     * <code>&lt;#if recipient?ends_with("@acme.com")&gt;</code>), the messages are fully rendered for each recipient.
+     */
+    List<MailMessage> preparePersonalizedMailMessages(final Map<String, Object> parameters) throws Exception {
+        final List<String> recipients = renderRecipients(parameters);
+        final List<MailMessage> mailMessages = new ArrayList<>(recipients.size());
+
+        if (
+            isRecipientInterpolatedOnly(configuration.getFrom()) &&
+            isRecipientInterpolatedOnly(configuration.getSubject()) &&
+            isRecipientInterpolatedOnly(configuration.getBody()) &&
+            !usesRecipient(configuration.getAttachments())
+        ) {
+            final Map<String, Object> sharedParameters = new HashMap<>(parameters);
+            sharedParameters.put(RECIPIENT_PARAMETER, RECIPIENT_PLACEHOLDER);
+
+            final String from = render(configuration.getFrom(), sharedParameters);
+            final String subject = render(configuration.getSubject(), sharedParameters);
+            final String body = render(configuration.getBody(), sharedParameters);
+            final MailMessage shared = new MailMessage();
+            addContentInMessage(shared, body);
+            final List<MailAttachment> attachments = prepareAttachments(parameters);
+
+            for (final String recipient : recipients) {
+                mailMessages.add(
+                    new MailMessage()
+                        .setFrom(personalize(from, recipient))
+                        .setTo(recipient)
+                        .setSubject(personalize(subject, recipient))
+                        .setHtml(personalize(shared.getHtml(), recipient))
+                        .setInlineAttachment(shared.getInlineAttachment())
+                        .setAttachment(attachments)
+                );
+            }
+        } else {
+            for (final String recipient : recipients) {
+                final Map<String, Object> recipientParameters = new HashMap<>(parameters);
+                recipientParameters.put(RECIPIENT_PARAMETER, recipient);
+
+                final MailMessage mailMessage = new MailMessage()
+                    .setFrom(render(configuration.getFrom(), recipientParameters))
+                    .setTo(recipient)
+                    .setSubject(render(configuration.getSubject(), recipientParameters));
+                try (PooledWriter recipientBody = WRITERS.acquire()) {
+                    addContentInMessage(mailMessage, render(configuration.getBody(), recipientParameters, recipientBody));
+                }
+                mailMessage.setAttachment(prepareAttachments(recipientParameters));
+                mailMessages.add(mailMessage);
+            }
+        }
+
+        return mailMessages;
+    }
+
+    List<String> renderRecipients(final Map<String, Object> parameters) {
         String recipients = configuration.getTo();
 
         try {
-            recipients = templatize(recipients, parameters);
+            recipients = render(recipients, parameters);
         } catch (Exception ex) {
             throw new IllegalArgumentException("Invalid email recipient(s)", ex);
         }
@@ -116,97 +924,162 @@ public class EmailNotifier extends AbstractConfigurableNotifier<EmailNotifierCon
             throw new IllegalArgumentException("Invalid email recipient(s)");
         }
 
-        final MailMessage mailMessage = new MailMessage()
-            .setFrom(templatize(configuration.getFrom(), parameters))
-            .setTo(Arrays.stream(recipients.split(RECIPIENTS_SPLIT_REGEX)).collect(toList()));
+        final List<String> addresses = RECIPIENTS.parse(recipients);
+        if (addresses.isEmpty()) {
+            throw new IllegalArgumentException("Invalid email recipient(s)");
+        }
+        return addresses;
+    }
 
-        mailMessage.setSubject(templatize(configuration.getSubject(), parameters));
-        addContentInMessage(mailMessage, templatize(configuration.getBody(), parameters));
+    private boolean usesRecipient(final List<String> templates) throws IOException {
+        if (templates != null) {
+            for (final String template : templates) {
+                if (template != null && recipientUsage(template) != VariableUsage.Usage.NONE) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
 
-        return mailMessage;
+    private boolean isRecipientInterpolatedOnly(final String template) throws IOException {
+        return template == null || recipientUsage(template) != VariableUsage.Usage.OTHER;
     }
 
-    MailConfig prepareMailConfig() {
-        final MailConfig mailConfig = new MailConfig()
-            .setHostname(configuration.getHost())
-            .setPort(configuration.getPort())
-            .setTrustAll(configuration.isSslTrustAll());
+    private VariableUsage.Usage recipientUsage(final String template) throws IOException {
+        return VariableUsage.of(TEMPLATE_CACHE.get(template, config), RECIPIENT_PARAMETER);
+    }
 
-        if (
-            configuration.getUsername() != null &&
-            !configuration.getUsername().isEmpty() &&
-            configuration.getPassword() != null &&
-            !configuration.getPassword().isEmpty()
-        ) {
-            mailConfig.setUsername(configuration.getUsername());
-            mailConfig.setPassword(configuration.getPassword());
-        } else {
-            mailConfig.setLogin(LoginOption.DISABLED);
-        }
+    private static String personalize(final String rendered, final String recipient) {
+        return rendered == null ? null : rendered.replace(RECIPIENT_PLACEHOLDER, recipient);
+    }
 
-        if (configuration.getSslKeyStore() != null) {
-            mailConfig.setKeyStore(configuration.getSslKeyStore());
+    private String render(final String template, final Map<String, Object> parameters) throws IOException, TemplateException {
+        if (template == null) {
+            return null;
         }
-        if (configuration.getSslKeyStorePassword() != null) {
-            mailConfig.setKeyStorePassword(configuration.getSslKeyStorePassword());
+
+        final long start = System.nanoTime();
+        final StringWriter writer = new StringWriter(template.length());
+        TEMPLATE_CACHE.get(template, config).process(parameters, writer);
+        metrics().recordRender(start);
+        return writer.toString();
+    }
+
+    /**
+     * Render a template into the given writer, whose content stays valid until it is closed.
+     *
+     * @return the given writer, or <code>null</code> if there is no template
+     */
+    private CharSequence render(final String template, final Map<String, Object> parameters, final PooledWriter writer)
+        throws IOException, TemplateException {
+        if (template == null) {
+            return null;
         }
-        if (configuration.isStartTLSEnabled()) {
-            mailConfig.setStarttls(StartTLSOptions.REQUIRED);
-        } else {
-            mailConfig.setStarttls(StartTLSOptions.DISABLED);
+
+        final long start = System.nanoTime();
+        TEMPLATE_CACHE.get(template, config).process(parameters, writer);
+        metrics().recordRender(start);
+        return writer;
+    }
+
+    MailConfig prepareMailConfig() {
+        return MAIL_CLIENTS.getMailConfig(settings());
+    }
+
+    /**
+     * @return the SMTP settings of this notifier, only built once as the configuration of a notifier does not change
+     */
+    private SmtpSettings settings() {
+        SmtpSettings current = settings;
+        if (current == null) {
+            current = MAIL_CLIENTS.getSettings(configuration);
+            settings = current;
         }
+        return current;
+    }
 
-        return mailConfig;
+    void addContentInMessage(final MailMessage mailMessage, final CharSequence htmlText) throws Exception {
+        final long start = System.nanoTime();
+        embedImages(mailMessage, htmlText);
+        metrics().recordContent(start);
     }
 
-    private void addContentInMessage(final MailMessage mailMessage, final String htmlText) throws Exception {
-        final Document document = Jsoup.parse(htmlText);
-        final Elements imageElements = document.getElementsByTag("img");
+    /**
+     * Replace the references to local images and data URIs by <code>cid:</code> URLs of inline attachments. The body is
+     * scanned in place and copied once, with its references replaced, into a pooled buffer: only the final HTML string
+     * is allocated.
+     */
+    private void embedImages(final MailMessage mailMessage, final CharSequence htmlText) throws Exception {
+        final List<ImageReference> images = ImageReferenceScanner.scan(htmlText);
+        if (images.isEmpty()) {
+            // No image to embed, the rendered body is used as-is
+            mailMessage.setHtml(htmlText.toString());
+            return;
+        }
 
-        final List<Element> resources = imageElements
-            .stream()
-            .filter(imageElement -> imageElement.hasAttr("src") && !imageElement.attr("src").startsWith("http"))
-            .collect(toList());
+        try (PooledWriter html = WRITERS.acquire()) {
+            embedImages(mailMessage, htmlText, images, html);
+        }
+    }
 
-        if (!resources.isEmpty()) {
-            final List<MailAttachment> mailAttachments = new ArrayList<>(resources.size());
-            for (final Element res : resources) {
-                final MailAttachment attachment = new MailAttachmentImpl();
+    private void embedImages(
+        final MailMessage mailMessage,
+        final CharSequence htmlText,
+        final List<ImageReference> images,
+        final PooledWriter html
+    ) throws Exception {
+        List<MailAttachment> mailAttachments = null;
+        int copied = 0;
 
-                String source = res.attr("src").trim();
-                if (source.startsWith("data:image/")) {
-                    final String value = source.replaceFirst("^data:image/[^;]*;base64,?", "");
-                    byte[] bytes = Base64.getDecoder().decode(value.getBytes(StandardCharsets.UTF_8));
-                    attachment.setContentType(extractMimeType(source));
-                    attachment.setData(buffer(bytes));
-                } else {
-                    attachment.setContentType(getContentTypeByFileName(source));
-                    attachment.setData(buffer(readAllBytes(new File(templatesPath, source).toPath())));
-                }
+        for (final ImageReference image : images) {
+            if (image.startsWith(htmlText, "http")) {
+                continue;
+            }
 
-                String contentId = UUID.random().toString();
-                res.attr("src", "cid:" + contentId);
-                attachment.setContentId('<' + contentId + '>');
-                attachment.setDisposition("inline");
+            final InlineAttachment attachment;
+            if (image.startsWith(htmlText, "data:image/")) {
+                // Decoded in place, without extracting the (possibly large) URI
+                final DataUri dataUri = DataUri.parse(htmlText, image.start(), image.end());
+                attachment = INLINE_ATTACHMENTS.get(dataUri.getMimeType(), dataUri.getData());
+            } else {
+                final String source = image.value(htmlText);
+                final Path path = new File(templatesPath, source).toPath();
+                final ImageResourceCache.ImageResource resource = IMAGE_CACHE.get(path, !isWatched(path));
+                attachment = INLINE_ATTACHMENTS.get(resource.getContentType(), resource.getData(), resource.getDigest());
+            }
 
-                mailAttachments.add(attachment);
+            if (mailAttachments == null) {
+                mailAttachments = new ArrayList<>(images.size());
             }
+            // The same image referenced several times is attached once
+            if (!containsInstance(mailAttachments, attachment.getAttachment())) {
+                mailAttachments.add(attachment.getAttachment());
+            }
+            html.append(htmlText, copied, image.start()).append("cid:").append(attachment.getContentId());
+            copied = image.end();
+        }
 
-            // Attach images
-            mailMessage.setInlineAttachment(mailAttachments);
+        if (mailAttachments == null) {
+            // Only remote images, the rendered body is used as-is
+            mailMessage.setHtml(htmlText.toString());
+            return;
         }
 
+        // Attach images
+        mailMessage.setInlineAttachment(mailAttachments);
+
         // Set HTML content
-        mailMessage.setHtml(document.html());
+        mailMessage.setHtml(html.append(htmlText, copied, htmlText.length()).toString());
     }
 
-    private String getContentTypeByFileName(final String fileName) {
-        if (fileName == null) {
-            return "";
-        } else if (fileName.endsWith(".png")) {
-            return "image/png";
+    private static boolean containsInstance(final List<MailAttachment> attachments, final MailAttachment attachment) {
+        for (int i = 0; i < attachments.size(); i++) {
+            if (attachments.get(i) == attachment) {
+                return true;
+            }
         }
-        return MimetypesFileTypeMap.getDefaultFileTypeMap().getContentType(fileName);
+        return false;
     }
 
     /**
@@ -214,11 +1087,68 @@ public class EmailNotifier extends AbstractConfigurableNotifier<EmailNotifierCon
      * @param encoded Base64 string
      * @return MIME type string
      */
-    private static String extractMimeType(final String encoded) {
-        final Pattern mime = Pattern.compile("^data:([a-zA-Z0-9]+/[a-zA-Z0-9]+).*,.*");
-        final Matcher matcher = mime.matcher(encoded);
-        if (!matcher.find()) return "";
-        return matcher.group(1).toLowerCase();
+    static String extractMimeType(final String encoded) {
+        return DataUri.mimeType(encoded);
+    }
+
+    /**
+     * Sends a list of messages with a bounded number of concurrent SMTP transactions. The resulting future fails with the
+     * first failure once all the messages have been processed.
+     */
+    private final class FanOut {
+
+        private final Vertx vertx;
+        private final SmtpSettings settings;
+        private final Deadline deadline;
+        private final List<MailMessage> mailMessages;
+        private final int concurrency;
+        private final AtomicInteger next = new AtomicInteger();
+        private final AtomicInteger remaining;
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+        private final Promise<Void> promise = Promise.promise();
+
+        private FanOut(Vertx vertx, SmtpSettings settings, Deadline deadline, List<MailMessage> mailMessages, int concurrency) {
+            this.vertx = vertx;
+            this.settings = settings;
+            this.deadline = deadline;
+            this.mailMessages = mailMessages;
+            this.concurrency = concurrency;
+            this.remaining = new AtomicInteger(mailMessages.size());
+        }
+
+        private Future<Void> send() {
+            if (mailMessages.isEmpty()) {
+                promise.complete();
+            }
+            for (int i = 0; i < Math.min(concurrency, mailMessages.size()); i++) {
+                sendNext();
+            }
+            return promise.future();
+        }
+
+        private void sendNext() {
+            final int index = next.getAndIncrement();
+            if (index >= mailMessages.size()) {
+                return;
+            }
+
+            sendMail(vertx, settings, mailMessages.get(index), deadline)
+                .onComplete(e -> {
+                    if (e.failed()) {
+                        LOGGER.error("An error occurs while sending email to {}", mailMessages.get(index).getTo(), e.cause());
+                        failure.compareAndSet(null, e.cause());
+                    }
+                    if (remaining.decrementAndGet() == 0) {
+                        if (failure.get() != null) {
+                            promise.fail(failure.get());
+                        } else {
+                            promise.complete();
+                        }
+                    } else {
+                        sendNext();
+                    }
+                });
+        }
     }
 
     public String getTemplatesPath() {
@@ -0,0 +1,80 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.notifier.email;
+
+import io.gravitee.notifier.api.Notification;
+
+/**
+ * Outcome of the sending of one notification of a batch. In per-recipient mode, a notification is sent as one email per
+ * recipient: it fails with the first failure of its emails, and otherwise holds the message id of the first one sent.
+ *
+ * @author GraviteeSource Team
+ */
+public class SendResult {
+
+    private final Notification notification;
+    private final String messageId;
+    private final Throwable cause;
+    private final int attempts;
+
+    private SendResult(Notification notification, String messageId, Throwable cause, int attempts) {
+        this.notification = notification;
+        this.messageId = messageId;
+        this.cause = cause;
+        this.attempts = attempts;
+    }
+
+    static SendResult success(final Notification notification, final String messageId, final int attempts) {
+        return new SendResult(notification, messageId, null, attempts);
+    }
+
+    static SendResult failure(final Notification notification, final Throwable cause) {
+        return failure(notification, cause, 0);
+    }
+
+    static SendResult failure(final Notification notification, final Throwable cause, final int attempts) {
+        return new SendResult(notification, null, cause, attempts);
+    }
+
+    public Notification getNotification() {
+        return notification;
+    }
+
+    public boolean succeeded() {
+        return cause == null;
+    }
+
+    /**
+     * @return the identifier of the message sent, or <code>null</code> if the email has not been sent
+     */
+    public String getMessageId() {
+        return messageId;
+    }
+
+    /**
+     * @return the reason why the email has not been sent, or <code>null</code> if it has been sent
+     */
+    public Throwable getCause() {
+        return cause;
+    }
+
+    /**
+     * @return the number of attempts made to send the email, 0 if it has not been sent at all (e.g. invalid template)
+     */
+    public int getAttempts() {
+        return attempts;
+    }
+}
@@ -0,0 +1,274 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.notifier.email.client;
+
+import io.gravitee.notifier.email.configuration.EmailNotifierConfiguration;
+import io.vertx.core.Vertx;
+import io.vertx.ext.mail.MailClient;
+import io.vertx.ext.mail.MailConfig;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Registry of the {@link MailClient}s (and so of their SMTP connection pools), keyed by the Vert.x instance and the
+ * {@link SmtpSettings} from which the effective {@link MailConfig} is built. Two configurations targeting the same host
+ * but differing by any other setting (port, credentials, TLS, pool sizing...) get their own pool.
+ *
+ * The settings and their mail configurations are memoized, so they are only rebuilt when the notifier configuration
+ * changes. Clients are reference counted while in use and closed, along with their memoized settings and configuration,
+ * once they have not been used for their idle eviction timeout. Idle clients are looked for by a periodic timer on each
+ * Vert.x instance, so they are closed even once no email is sent anymore. The eviction listener is notified when the
+ * settings of a notifier are forgotten, so that the state kept for them elsewhere can be released as well.
+ *
+ * @author GraviteeSource Team
+ */
+public class MailClientRegistry {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MailClientRegistry.class);
+
+    private static final long SWEEP_INTERVAL = 10_000;
+
+    private final ConcurrentMap<SmtpSettings, SmtpSettings> settings = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<SmtpSettings, MailConfig> mailConfigs = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<Key, PooledMailClient> clients = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<Vertx, Long> sweepers = new ConcurrentHashMap<>();
+
+    private final long sweepInterval;
+
+    private volatile Consumer<SmtpSettings> evictionListener;
+
+    public MailClientRegistry() {
+        this(SWEEP_INTERVAL);
+    }
+
+    MailClientRegistry(final long sweepInterval) {
+        this.sweepInterval = sweepInterval;
+    }
+
+    /**
+     * Set the listener notified with the settings of a notifier once none of their clients is in use anymore.
+     */
+    public void setEvictionListener(final Consumer<SmtpSettings> evictionListener) {
+        this.evictionListener = evictionListener;
+    }
+
+    /**
+     * Get the settings of the given notifier configuration. Equal settings are shared, so that their identifier and
+     * endpoints are only computed once.
+     *
+     * @param configuration the notifier configuration
+     * @return the memoized settings
+     */
+    public SmtpSettings getSettings(final EmailNotifierConfiguration configuration) {
+        final SmtpSettings built = SmtpSettings.of(configuration);
+        final SmtpSettings existing = settings.putIfAbsent(built, built);
+        return existing != null ? existing : built;
+    }
+
+    /**
+     * Get the mail configuration matching the given settings, building it only if needed.
+     *
+     * @param settings the SMTP settings
+     * @return the memoized mail configuration
+     */
+    public MailConfig getMailConfig(final SmtpSettings settings) {
+        return mailConfigs.computeIfAbsent(settings, SmtpSettings::toMailConfig);
+    }
+
+    /**
+     * Find the memoized settings having the given identifier.
+     *
+     * @param id the settings identifier
+     * @return the settings, or <code>null</code> if no configuration has been built for them
+     */
+    public SmtpSettings findSettings(final String id) {
+        for (SmtpSettings settings : mailConfigs.keySet()) {
+            if (settings.id().equals(id)) {
+                return settings;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Acquire the client matching the given settings, creating it if needed. The client must be released once the mail
+     * has been sent.
+     *
+     * @param vertx the Vert.x instance owning the client
+     * @param settings the SMTP settings
+     * @param idleEvictionTimeout delay (in milliseconds) after which an unused client is closed, 0 to never close it
+     * @return the acquired client
+     */
+    public PooledMailClient acquire(final Vertx vertx, final SmtpSettings settings, final long idleEvictionTimeout) {
+        sweepers.computeIfAbsent(vertx, v -> v.setPeriodic(sweepInterval, timerId -> sweep()));
+
+        final Key key = new Key(vertx, settings);
+        while (true) {
+            final PooledMailClient client = clients.computeIfAbsent(
+                key,
+                k -> new PooledMailClient(k, MailClient.create(vertx, getMailConfig(settings)), idleEvictionTimeout)
+            );
+            if (client.retain()) {
+                return client;
+            }
+            // The client has just been evicted, let a new one be created
+            clients.remove(key, client);
+        }
+    }
+
+    /**
+     * Close all the clients, whether they are in use or not.
+     */
+    public void closeAll() {
+        sweepers.forEach(Vertx::cancelTimer);
+        sweepers.clear();
+        clients.values().forEach(PooledMailClient::close);
+        clients.clear();
+        mailConfigs.clear();
+        settings.clear();
+    }
+
+    public int size() {
+        return clients.size();
+    }
+
+    /**
+     * @return the number of clients currently used to send emails
+     */
+    public int inUse() {
+        int inUse = 0;
+        for (PooledMailClient client : clients.values()) {
+            if (client.references.get() > 0) {
+                inUse++;
+            }
+        }
+        return inUse;
+    }
+
+    private void sweep() {
+        final long now = System.currentTimeMillis();
+        clients.forEach((key, client) -> {
+            if (client.evictIfIdle(now)) {
+                clients.remove(key, client);
+                LOGGER.debug("Closing idle mail client for {}:{}", key.settings.getHost(), key.settings.getPort());
+            }
+        });
+
+        // Forget the configurations which are no longer referenced by any client
+        mailConfigs.keySet().removeIf(settings -> !isInUse(settings));
+        for (SmtpSettings memoized : settings.keySet()) {
+            if (memoized.endpoints().stream().noneMatch(this::isInUse) && settings.remove(memoized) != null) {
+                final Consumer<SmtpSettings> listener = evictionListener;
+                if (listener != null) {
+                    listener.accept(memoized);
+                }
+            }
+        }
+    }
+
+    private boolean isInUse(final SmtpSettings settings) {
+        return clients.keySet().stream().anyMatch(key -> key.settings.equals(settings));
+    }
+
+    public static final class PooledMailClient {
+
+        private static final int CLOSED = -1;
+
+        private final Key key;
+        private final MailClient client;
+        private final long idleEvictionTimeout;
+        private final AtomicInteger references = new AtomicInteger();
+        private volatile long lastUsed = System.currentTimeMillis();
+
+        private PooledMailClient(Key key, MailClient client, long idleEvictionTimeout) {
+            this.key = key;
+            this.client = client;
+            this.idleEvictionTimeout = idleEvictionTimeout;
+        }
+
+        public MailClient getClient() {
+            return client;
+        }
+
+        public SmtpSettings getSettings() {
+            return key.settings;
+        }
+
+        /**
+         * Release the client once the mail has been sent.
+         */
+        public void release() {
+            lastUsed = System.currentTimeMillis();
+            references.decrementAndGet();
+        }
+
+        private boolean retain() {
+            int current;
+            do {
+                current = references.get();
+                if (current == CLOSED) {
+                    return false;
+                }
+            } while (!references.compareAndSet(current, current + 1));
+            lastUsed = System.currentTimeMillis();
+            return true;
+        }
+
+        private boolean evictIfIdle(final long now) {
+            if (idleEvictionTimeout <= 0 || now - lastUsed < idleEvictionTimeout || !references.compareAndSet(0, CLOSED)) {
+                return false;
+            }
+            client.close();
+            return true;
+        }
+
+        private void close() {
+            references.set(CLOSED);
+            client.close();
+        }
+    }
+
+    private static final class Key {
+
+        private final Vertx vertx;
+        private final SmtpSettings settings;
+
+        private Key(Vertx vertx, SmtpSettings settings) {
+            this.vertx = vertx;
+            this.settings = settings;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            final Key other = (Key) o;
+            return vertx == other.vertx && settings.equals(other.settings);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(vertx) + settings.hashCode();
+        }
+    }
+}
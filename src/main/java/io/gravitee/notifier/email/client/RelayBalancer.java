@@ -0,0 +1,372 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.notifier.email.client;
+
+import io.gravitee.notifier.email.dispatch.CircuitBreaker;
+import io.gravitee.notifier.email.dispatch.CircuitOpenException;
+import io.gravitee.notifier.email.dispatch.SendTimeoutException;
+import io.gravitee.notifier.email.dispatch.SmtpFailures;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.net.NetClient;
+import io.vertx.core.net.NetClientOptions;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Spreads the emails of a notifier over its SMTP relays (see {@link SmtpSettings#endpoints()}), each relay having its
+ * own connection pool.
+ *
+ * Each relay has a {@link CircuitBreaker}, counting transient errors (connection errors, timeouts or 4xx replies) as
+ * failures. A relay whose breaker is open does not receive emails anymore, and is probed in the background until it
+ * answers with an SMTP greeting again. When the breakers of all the relays of a notifier are open, emails fail right
+ * away instead of waiting for the SMTP timeouts.
+ *
+ * The relays of a notifier are kept until they are evicted, along with the clients of the notifier (see
+ * {@link MailClientRegistry#setEvictionListener}).
+ *
+ * @author GraviteeSource Team
+ */
+public class RelayBalancer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RelayBalancer.class);
+
+    /**
+     * Weight of the last observed send time in the latency average.
+     */
+    private static final double EWMA_WEIGHT = 0.3;
+
+    private static final long MAX_PROBE_TIMEOUT = 5000;
+
+    public enum Strategy {
+        /**
+         * Each relay in turn.
+         */
+        ROUND_ROBIN,
+        /**
+         * The relay with the fewest emails being sent.
+         */
+        LEAST_IN_FLIGHT,
+        /**
+         * The relay with the lowest average send time, weighted by the number of emails being sent.
+         */
+        LATENCY_WEIGHTED,
+    }
+
+    /**
+     * Notified of the state transitions of the circuit breakers of the relays.
+     */
+    @FunctionalInterface
+    public interface Listener {
+        void onStateTransition(SmtpSettings relay, CircuitBreaker.State from, CircuitBreaker.State to);
+    }
+
+    private final ConcurrentMap<SmtpSettings, Relays> targets = new ConcurrentHashMap<>();
+
+    private volatile CircuitBreaker.Config circuitBreakerConfig;
+    private volatile long probeInterval;
+    private volatile Listener listener;
+
+    public RelayBalancer(final CircuitBreaker.Config circuitBreakerConfig, final long probeInterval) {
+        configure(circuitBreakerConfig, probeInterval);
+    }
+
+    /**
+     * Configure the circuit breakers and the probes. The circuit breakers of the relays already in use keep their
+     * configuration.
+     */
+    public void configure(final CircuitBreaker.Config circuitBreakerConfig, final long probeInterval) {
+        if (probeInterval <= 0) {
+            throw new IllegalArgumentException("Relay probe interval must be positive");
+        }
+        this.circuitBreakerConfig = circuitBreakerConfig;
+        this.probeInterval = probeInterval;
+    }
+
+    public void setListener(final Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Select the relay to send the next email of the given settings to.
+     *
+     * @param settings the settings of the notifier
+     * @return the selected relay
+     */
+    public Relay select(final SmtpSettings settings) {
+        return relays(settings).select(settings.getRelayStrategy());
+    }
+
+    /**
+     * @return the relays of the given settings
+     */
+    public List<Relay> getRelays(final SmtpSettings settings) {
+        return List.of(relays(settings).relays);
+    }
+
+    /**
+     * Find the settings having the given identifier.
+     *
+     * @param id the settings identifier
+     * @return the settings, or <code>null</code> if no email has been sent with them
+     */
+    public SmtpSettings findSettings(final String id) {
+        for (SmtpSettings settings : targets.keySet()) {
+            if (settings.id().equals(id)) {
+                return settings;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Forget the relays of the given settings, along with their circuit breakers, and stop probing them.
+     *
+     * @param settings the settings of the notifier
+     */
+    public void evict(final SmtpSettings settings) {
+        final Relays relays = targets.remove(settings);
+        if (relays != null) {
+            for (Relay relay : relays.relays) {
+                relay.evicted = true;
+            }
+        }
+    }
+
+    /**
+     * @return the number of notifier settings whose relays are kept
+     */
+    public int size() {
+        return targets.size();
+    }
+
+    private Relays relays(final SmtpSettings settings) {
+        return targets.computeIfAbsent(settings, s -> new Relays(s.endpoints()));
+    }
+
+    private final class Relays {
+
+        private final Relay[] relays;
+        private final AtomicInteger next = new AtomicInteger();
+
+        private Relays(final List<SmtpSettings> endpoints) {
+            this.relays = new Relay[endpoints.size()];
+            for (int i = 0; i < relays.length; i++) {
+                relays[i] = new Relay(endpoints.get(i));
+            }
+        }
+
+        private Relay select(final Strategy strategy) {
+            if (relays.length == 1) {
+                return relays[0];
+            }
+
+            // Rotate the starting point so that ties are spread over the relays
+            final int offset = Math.floorMod(next.getAndIncrement(), relays.length);
+            final Relay selected = select(strategy, offset, false);
+            // No relay available, the send fails right away
+            return selected != null ? selected : select(strategy, offset, true);
+        }
+
+        private Relay select(final Strategy strategy, final int offset, final boolean includeUnavailable) {
+            Relay selected = null;
+            double selectedCost = Double.MAX_VALUE;
+            for (int i = 0; i < relays.length; i++) {
+                final Relay relay = relays[(offset + i) % relays.length];
+                if (!includeUnavailable && !relay.isAvailable()) {
+                    continue;
+                }
+                if (strategy == Strategy.ROUND_ROBIN) {
+                    return relay;
+                }
+
+                final double cost = strategy == Strategy.LEAST_IN_FLIGHT
+                    ? relay.inFlight.get()
+                    : relay.latency * (relay.inFlight.get() + 1);
+                if (cost < selectedCost) {
+                    selected = relay;
+                    selectedCost = cost;
+                }
+            }
+            return selected;
+        }
+    }
+
+    public final class Relay {
+
+        private final SmtpSettings settings;
+        private final CircuitBreaker breaker;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicBoolean probing = new AtomicBoolean();
+        private volatile double latency;
+        private volatile boolean evicted;
+
+        private Relay(final SmtpSettings settings) {
+            this.settings = settings;
+            this.breaker = new CircuitBreaker(settings.getHost() + ':' + settings.getPort(), circuitBreakerConfig, this::onStateTransition);
+        }
+
+        /**
+         * @return the settings of this relay, to get its mail client
+         */
+        public SmtpSettings getSettings() {
+            return settings;
+        }
+
+        /**
+         * Send an email through this relay, keeping track of the send time and of the failures. The send fails right away
+         * with a {@link CircuitOpenException} if the circuit breaker of the relay is open.
+         *
+         * @param vertx the Vert.x instance used to probe the relay once its circuit breaker is open
+         * @param sender sends the email
+         * @return the result of the send
+         */
+        public <T> Future<T> send(final Vertx vertx, final Supplier<Future<T>> sender) {
+            if (!breaker.tryAcquire()) {
+                return Future.failedFuture(new CircuitOpenException(breaker.getName()));
+            }
+
+            final long start = System.nanoTime();
+            inFlight.incrementAndGet();
+            Future<T> sent;
+            try {
+                sent = sender.get();
+            } catch (RuntimeException ex) {
+                sent = Future.failedFuture(ex);
+            }
+            return sent.onComplete(e -> {
+                inFlight.decrementAndGet();
+                final long elapsed = System.nanoTime() - start;
+                if (e.succeeded()) {
+                    recordLatency(elapsed);
+                }
+                // A permanent failure means that the relay did answer, only the email has been refused. A timed out
+                // transaction is permanent to not send the email twice, but the relay did not answer in time.
+                final boolean failed = e.failed() && (SmtpFailures.isTransient(e.cause()) || e.cause() instanceof SendTimeoutException);
+                breaker.onResult(elapsed, failed);
+                if (breaker.getState() == CircuitBreaker.State.OPEN && probing.compareAndSet(false, true)) {
+                    scheduleProbe(vertx);
+                }
+            });
+        }
+
+        /**
+         * @return <code>true</code> if the circuit breaker of the relay lets emails through
+         */
+        public boolean isAvailable() {
+            return breaker.isCallPermitted();
+        }
+
+        public CircuitBreaker.State getState() {
+            return breaker.getState();
+        }
+
+        public int getInFlight() {
+            return inFlight.get();
+        }
+
+        /**
+         * @return the average send time, in nanoseconds, or 0 if no email has been sent yet
+         */
+        public double getLatency() {
+            return latency;
+        }
+
+        private synchronized void recordLatency(final long elapsed) {
+            latency = latency == 0 ? elapsed : latency + EWMA_WEIGHT * (elapsed - latency);
+        }
+
+        private void onStateTransition(final CircuitBreaker breaker, final CircuitBreaker.State from, final CircuitBreaker.State to) {
+            if (to == CircuitBreaker.State.OPEN) {
+                LOGGER.warn(
+                    "Circuit breaker of SMTP relay {} is open (failure rate {}%, slow call rate {}%)",
+                    breaker.getName(),
+                    breaker.getFailureRate(),
+                    breaker.getSlowCallRate()
+                );
+            } else if (to == CircuitBreaker.State.CLOSED) {
+                LOGGER.info("Circuit breaker of SMTP relay {} is closed", breaker.getName());
+            }
+            final Listener current = listener;
+            if (current != null) {
+                current.onStateTransition(settings, from, to);
+            }
+        }
+
+        private void scheduleProbe(final Vertx vertx) {
+            vertx.setTimer(probeInterval, timerId -> probe(vertx));
+        }
+
+        /**
+         * Open a connection to the relay and wait for its greeting (a 220 reply). Once greeted, the circuit breaker lets
+         * trial emails through without waiting for the end of its open state.
+         */
+        private void probe(final Vertx vertx) {
+            if (evicted || breaker.getState() != CircuitBreaker.State.OPEN) {
+                probing.set(false);
+                return;
+            }
+
+            final long timeout = Math.min(probeInterval, MAX_PROBE_TIMEOUT);
+            final NetClient client = vertx.createNetClient(new NetClientOptions().setConnectTimeout((int) timeout));
+            final Promise<Void> greeted = Promise.promise();
+            final long timer = vertx.setTimer(timeout, t -> greeted.tryFail(new TimeoutException("No greeting received")));
+
+            client
+                .connect(settings.getPort(), settings.getHost())
+                .onFailure(greeted::tryFail)
+                .onSuccess(socket -> {
+                    socket.handler(buffer -> {
+                        if (buffer.toString(StandardCharsets.US_ASCII).startsWith("220")) {
+                            socket.write("QUIT\r\n");
+                            greeted.tryComplete();
+                        } else {
+                            greeted.tryFail("Unexpected greeting: " + buffer.toString(StandardCharsets.US_ASCII).trim());
+                        }
+                    });
+                    socket.closeHandler(v -> greeted.tryFail("Connection closed"));
+                });
+
+            greeted
+                .future()
+                .onComplete(e -> {
+                    vertx.cancelTimer(timer);
+                    client.close();
+                    if (e.succeeded()) {
+                        probing.set(false);
+                        breaker.halfOpen();
+                    } else {
+                        LOGGER.debug(
+                            "SMTP relay {}:{} is still unavailable: {}",
+                            settings.getHost(),
+                            settings.getPort(),
+                            e.cause().getMessage()
+                        );
+                        scheduleProbe(vertx);
+                    }
+                });
+        }
+    }
+}
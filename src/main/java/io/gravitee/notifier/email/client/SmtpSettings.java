@@ -0,0 +1,339 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.notifier.email.client;
+
+import io.gravitee.notifier.email.configuration.EmailNotifierConfiguration;
+import io.vertx.ext.mail.LoginOption;
+import io.vertx.ext.mail.MailConfig;
+import io.vertx.ext.mail.StartTLSOptions;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Immutable snapshot of the notifier settings from which the {@link MailConfig} is built. Two equal settings always
+ * produce the same effective mail configuration, so it is used as the key of the memoized configurations and clients.
+ *
+ * @author GraviteeSource Team
+ */
+public final class SmtpSettings {
+
+    private final String host;
+    private final int port;
+    private final String username;
+    private final String password;
+    private final boolean startTLSEnabled;
+    private final boolean sslTrustAll;
+    private final String sslKeyStore;
+    private final String sslKeyStorePassword;
+    private final int maxPoolSize;
+    private final boolean keepAlive;
+    private final int keepAliveTimeout;
+    private final boolean pipelining;
+    private final int connectTimeout;
+    private final int idleTimeout;
+    private final int sendTimeout;
+    private final List<String> relays;
+    private final RelayBalancer.Strategy relayStrategy;
+    private final int hash;
+    private volatile String id;
+    private volatile List<SmtpSettings> endpoints;
+
+    private SmtpSettings(final EmailNotifierConfiguration configuration) {
+        this.host = configuration.getHost();
+        this.port = configuration.getPort();
+        this.username = configuration.getUsername();
+        this.password = configuration.getPassword();
+        this.startTLSEnabled = configuration.isStartTLSEnabled();
+        this.sslTrustAll = configuration.isSslTrustAll();
+        this.sslKeyStore = configuration.getSslKeyStore();
+        this.sslKeyStorePassword = configuration.getSslKeyStorePassword();
+        this.maxPoolSize = configuration.getMaxPoolSize();
+        this.keepAlive = configuration.isKeepAlive();
+        this.keepAliveTimeout = configuration.getKeepAliveTimeout();
+        this.pipelining = configuration.isPipelining();
+        this.connectTimeout = configuration.getConnectTimeout();
+        this.idleTimeout = configuration.getIdleTimeout();
+        this.sendTimeout = configuration.getSendTimeout();
+        this.relays = relays(configuration.getRelays());
+        this.relayStrategy =
+            configuration.getRelayStrategy() == null || configuration.getRelayStrategy().isEmpty()
+                ? RelayBalancer.Strategy.ROUND_ROBIN
+                : RelayBalancer.Strategy.valueOf(configuration.getRelayStrategy().toUpperCase());
+        this.hash = hash();
+    }
+
+    /**
+     * Settings of one of the relays of the given settings: same credentials and connection settings, but another host
+     * and port.
+     */
+    private SmtpSettings(final SmtpSettings settings, final String host, final int port) {
+        this.host = host;
+        this.port = port;
+        this.username = settings.username;
+        this.password = settings.password;
+        this.startTLSEnabled = settings.startTLSEnabled;
+        this.sslTrustAll = settings.sslTrustAll;
+        this.sslKeyStore = settings.sslKeyStore;
+        this.sslKeyStorePassword = settings.sslKeyStorePassword;
+        this.maxPoolSize = settings.maxPoolSize;
+        this.keepAlive = settings.keepAlive;
+        this.keepAliveTimeout = settings.keepAliveTimeout;
+        this.pipelining = settings.pipelining;
+        this.connectTimeout = settings.connectTimeout;
+        this.idleTimeout = settings.idleTimeout;
+        this.sendTimeout = settings.sendTimeout;
+        this.relays = Collections.emptyList();
+        this.relayStrategy = settings.relayStrategy;
+        this.hash = hash();
+    }
+
+    private int hash() {
+        return Objects.hash(
+            host,
+            port,
+            username,
+            password,
+            startTLSEnabled,
+            sslTrustAll,
+            sslKeyStore,
+            sslKeyStorePassword,
+            maxPoolSize,
+            keepAlive,
+            keepAliveTimeout,
+            pipelining,
+            connectTimeout,
+            idleTimeout,
+            sendTimeout,
+            relays,
+            relayStrategy
+        );
+    }
+
+    private static List<String> relays(final List<String> configured) {
+        if (configured == null || configured.isEmpty()) {
+            return Collections.emptyList();
+        }
+        final List<String> relays = new ArrayList<>(configured.size());
+        for (String relay : configured) {
+            if (relay != null && !relay.trim().isEmpty()) {
+                relays.add(relay.trim());
+            }
+        }
+        return Collections.unmodifiableList(relays);
+    }
+
+    public static SmtpSettings of(final EmailNotifierConfiguration configuration) {
+        return new SmtpSettings(configuration);
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    /**
+     * @return the delay (in milliseconds) of a single attempt to send an email, 0 for no limit
+     */
+    public int getSendTimeout() {
+        return sendTimeout;
+    }
+
+    public RelayBalancer.Strategy getRelayStrategy() {
+        return relayStrategy;
+    }
+
+    /**
+     * The SMTP servers to send the emails to: the configured host, followed by the additional relays. Each relay is
+     * given as <code>host</code> or <code>host:port</code>, the port defaulting to the one of the configured host.
+     *
+     * @return the settings of each relay, or only these settings if no additional relay is configured
+     */
+    public List<SmtpSettings> endpoints() {
+        List<SmtpSettings> current = endpoints;
+        if (current == null) {
+            if (relays.isEmpty()) {
+                current = Collections.singletonList(this);
+            } else {
+                final List<SmtpSettings> settings = new ArrayList<>(relays.size() + 1);
+                settings.add(new SmtpSettings(this, host, port));
+                for (String relay : relays) {
+                    settings.add(relay(relay));
+                }
+                current = Collections.unmodifiableList(settings);
+            }
+            endpoints = current;
+        }
+        return current;
+    }
+
+    private SmtpSettings relay(final String relay) {
+        String relayHost = relay;
+        int relayPort = port;
+        final int separator = relay.lastIndexOf(':');
+        // A colon is either the port separator or part of an IPv6 address, which must then be enclosed in brackets
+        if (separator > 0 && (relay.indexOf(':') == separator || relay.charAt(separator - 1) == ']')) {
+            relayHost = relay.substring(0, separator);
+            try {
+                relayPort = Integer.parseInt(relay.substring(separator + 1));
+            } catch (NumberFormatException nfe) {
+                throw new IllegalArgumentException("Invalid SMTP relay " + relay);
+            }
+        }
+        if (relayHost.startsWith("[") && relayHost.endsWith("]")) {
+            relayHost = relayHost.substring(1, relayHost.length() - 1);
+        }
+        if (relayHost.isEmpty() || relayPort <= 0 || relayPort > 65535) {
+            throw new IllegalArgumentException("Invalid SMTP relay " + relay);
+        }
+        return new SmtpSettings(this, relayHost, relayPort);
+    }
+
+    /**
+     * Stable identifier of these settings. Used to reference the settings from outside of the JVM (e.g. spooled emails),
+     * so the passwords are left out: the identifier could otherwise be used to check guessed passwords. The timeouts are
+     * left out as well, they do not change where the emails go.
+     *
+     * @return the identifier
+     */
+    public String id() {
+        String current = id;
+        if (current == null) {
+            try {
+                final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+                final String values =
+                    String.join(
+                        "\u0000",
+                        String.valueOf(host),
+                        String.valueOf(port),
+                        String.valueOf(username),
+                        String.valueOf(startTLSEnabled),
+                        String.valueOf(sslTrustAll),
+                        String.valueOf(sslKeyStore),
+                        String.valueOf(maxPoolSize),
+                        String.valueOf(keepAlive),
+                        String.valueOf(keepAliveTimeout)
+                    ) +
+                    // Only added when configured, so that the identifiers of the settings without relays do not change
+                    (relays.isEmpty() ? "" : "\u0000" + String.join(",", relays));
+                final byte[] hashed = digest.digest(values.getBytes(StandardCharsets.UTF_8));
+                final StringBuilder builder = new StringBuilder(32);
+                for (int i = 0; i < 16; i++) {
+                    builder.append(Character.forDigit((hashed[i] >> 4) & 0xF, 16)).append(Character.forDigit(hashed[i] & 0xF, 16));
+                }
+                current = builder.toString();
+                id = current;
+            } catch (NoSuchAlgorithmException nsae) {
+                throw new IllegalStateException(nsae);
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Build the mail configuration matching these settings.
+     *
+     * @return a new mail configuration
+     */
+    public MailConfig toMailConfig() {
+        final MailConfig mailConfig = new MailConfig().setHostname(host).setPort(port).setTrustAll(sslTrustAll);
+
+        if (username != null && !username.isEmpty() && password != null && !password.isEmpty()) {
+            mailConfig.setUsername(username);
+            mailConfig.setPassword(password);
+        } else {
+            mailConfig.setLogin(LoginOption.DISABLED);
+        }
+
+        if (sslKeyStore != null) {
+            mailConfig.setKeyStore(sslKeyStore);
+        }
+        if (sslKeyStorePassword != null) {
+            mailConfig.setKeyStorePassword(sslKeyStorePassword);
+        }
+        if (startTLSEnabled) {
+            mailConfig.setStarttls(StartTLSOptions.REQUIRED);
+        } else {
+            mailConfig.setStarttls(StartTLSOptions.DISABLED);
+        }
+
+        if (maxPoolSize > 0) {
+            mailConfig.setMaxPoolSize(maxPoolSize);
+        }
+        if (connectTimeout > 0) {
+            mailConfig.setConnectTimeout(connectTimeout);
+        }
+        mailConfig.setKeepAlive(keepAlive);
+        // Only used when the server advertises the PIPELINING extension
+        mailConfig.setPipelining(pipelining);
+        // Closes the pooled connections once unused
+        if (keepAliveTimeout > 0) {
+            mailConfig.setKeepAliveTimeout(keepAliveTimeout);
+            mailConfig.setKeepAliveTimeoutUnit(TimeUnit.SECONDS);
+        }
+        // Closes the connections of a stalled server
+        if (idleTimeout > 0) {
+            mailConfig.setIdleTimeout(idleTimeout);
+            mailConfig.setIdleTimeoutUnit(TimeUnit.MILLISECONDS);
+        }
+
+        return mailConfig;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof SmtpSettings)) return false;
+        final SmtpSettings other = (SmtpSettings) o;
+        return (
+            hash == other.hash &&
+            port == other.port &&
+            startTLSEnabled == other.startTLSEnabled &&
+            sslTrustAll == other.sslTrustAll &&
+            maxPoolSize == other.maxPoolSize &&
+            keepAlive == other.keepAlive &&
+            keepAliveTimeout == other.keepAliveTimeout &&
+            pipelining == other.pipelining &&
+            connectTimeout == other.connectTimeout &&
+            idleTimeout == other.idleTimeout &&
+            sendTimeout == other.sendTimeout &&
+            relayStrategy == other.relayStrategy &&
+            Objects.equals(host, other.host) &&
+            Objects.equals(username, other.username) &&
+            Objects.equals(password, other.password) &&
+            Objects.equals(sslKeyStore, other.sslKeyStore) &&
+            Objects.equals(sslKeyStorePassword, other.sslKeyStorePassword) &&
+            relays.equals(other.relays)
+        );
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+}
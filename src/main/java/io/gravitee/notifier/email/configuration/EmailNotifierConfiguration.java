@@ -17,6 +17,7 @@ package io.gravitee.notifier.email.configuration;
 
 import io.gravitee.notifier.api.NotifierConfiguration;
 import java.io.Serializable;
+import java.util.List;
 
 /**
  * @author David BRASSELY (david.brassely at graviteesource.com)
@@ -40,6 +41,36 @@ public class EmailNotifierConfiguration implements NotifierConfiguration, Serial
     private String sslKeyStore;
     private String sslKeyStorePassword;
 
+    private int maxPoolSize;
+    private boolean keepAlive = true;
+    private int keepAliveTimeout;
+    private boolean pipelining = true;
+    private int idleEvictionTimeout = 300;
+
+    private int connectTimeout = 10000;
+    private int idleTimeout = 60000;
+    private int sendTimeout = 60000;
+    private int deadline;
+
+    private boolean perRecipient;
+    private int fanOutConcurrency;
+
+    private int retryMaxAttempts = 3;
+    private int retryBaseDelay = 1000;
+    private int retryMaxDelay = 30000;
+    private double retryJitter = 0.2;
+
+    private int rateLimit;
+    private int rateLimitBurst;
+
+    private int coalescingWindow;
+
+    private List<String> relays;
+    private String relayStrategy;
+
+    private List<String> attachments;
+    private int attachmentMaxSize = 10 * 1024 * 1024;
+
     public String getHost() {
         return host;
     }
@@ -131,4 +162,180 @@ public class EmailNotifierConfiguration implements NotifierConfiguration, Serial
     public void setSslKeyStorePassword(String sslKeyStorePassword) {
         this.sslKeyStorePassword = sslKeyStorePassword;
     }
+
+    public int getMaxPoolSize() {
+        return maxPoolSize;
+    }
+
+    public void setMaxPoolSize(int maxPoolSize) {
+        this.maxPoolSize = maxPoolSize;
+    }
+
+    public boolean isKeepAlive() {
+        return keepAlive;
+    }
+
+    public void setKeepAlive(boolean keepAlive) {
+        this.keepAlive = keepAlive;
+    }
+
+    public int getKeepAliveTimeout() {
+        return keepAliveTimeout;
+    }
+
+    public void setKeepAliveTimeout(int keepAliveTimeout) {
+        this.keepAliveTimeout = keepAliveTimeout;
+    }
+
+    public boolean isPipelining() {
+        return pipelining;
+    }
+
+    public void setPipelining(boolean pipelining) {
+        this.pipelining = pipelining;
+    }
+
+    public int getIdleEvictionTimeout() {
+        return idleEvictionTimeout;
+    }
+
+    public void setIdleEvictionTimeout(int idleEvictionTimeout) {
+        this.idleEvictionTimeout = idleEvictionTimeout;
+    }
+
+    public boolean isPerRecipient() {
+        return perRecipient;
+    }
+
+    public void setPerRecipient(boolean perRecipient) {
+        this.perRecipient = perRecipient;
+    }
+
+    public int getFanOutConcurrency() {
+        return fanOutConcurrency;
+    }
+
+    public void setFanOutConcurrency(int fanOutConcurrency) {
+        this.fanOutConcurrency = fanOutConcurrency;
+    }
+
+    public int getRetryMaxAttempts() {
+        return retryMaxAttempts;
+    }
+
+    public void setRetryMaxAttempts(int retryMaxAttempts) {
+        this.retryMaxAttempts = retryMaxAttempts;
+    }
+
+    public int getRetryBaseDelay() {
+        return retryBaseDelay;
+    }
+
+    public void setRetryBaseDelay(int retryBaseDelay) {
+        this.retryBaseDelay = retryBaseDelay;
+    }
+
+    public int getRetryMaxDelay() {
+        return retryMaxDelay;
+    }
+
+    public void setRetryMaxDelay(int retryMaxDelay) {
+        this.retryMaxDelay = retryMaxDelay;
+    }
+
+    public double getRetryJitter() {
+        return retryJitter;
+    }
+
+    public void setRetryJitter(double retryJitter) {
+        this.retryJitter = retryJitter;
+    }
+
+    public int getRateLimit() {
+        return rateLimit;
+    }
+
+    public void setRateLimit(int rateLimit) {
+        this.rateLimit = rateLimit;
+    }
+
+    public int getRateLimitBurst() {
+        return rateLimitBurst;
+    }
+
+    public void setRateLimitBurst(int rateLimitBurst) {
+        this.rateLimitBurst = rateLimitBurst;
+    }
+
+    public int getCoalescingWindow() {
+        return coalescingWindow;
+    }
+
+    public void setCoalescingWindow(int coalescingWindow) {
+        this.coalescingWindow = coalescingWindow;
+    }
+
+    public List<String> getRelays() {
+        return relays;
+    }
+
+    public void setRelays(List<String> relays) {
+        this.relays = relays;
+    }
+
+    public String getRelayStrategy() {
+        return relayStrategy;
+    }
+
+    public void setRelayStrategy(String relayStrategy) {
+        this.relayStrategy = relayStrategy;
+    }
+
+    public int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public void setConnectTimeout(int connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    public int getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    public void setIdleTimeout(int idleTimeout) {
+        this.idleTimeout = idleTimeout;
+    }
+
+    public int getSendTimeout() {
+        return sendTimeout;
+    }
+
+    public void setSendTimeout(int sendTimeout) {
+        this.sendTimeout = sendTimeout;
+    }
+
+    public int getDeadline() {
+        return deadline;
+    }
+
+    public void setDeadline(int deadline) {
+        this.deadline = deadline;
+    }
+
+    public List<String> getAttachments() {
+        return attachments;
+    }
+
+    public void setAttachments(List<String> attachments) {
+        this.attachments = attachments;
+    }
+
+    public int getAttachmentMaxSize() {
+        return attachmentMaxSize;
+    }
+
+    public void setAttachmentMaxSize(int attachmentMaxSize) {
+        this.attachmentMaxSize = attachmentMaxSize;
+    }
 }
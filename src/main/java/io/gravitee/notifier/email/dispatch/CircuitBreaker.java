@@ -0,0 +1,264 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.notifier.email.dispatch;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Circuit breaker of an SMTP target, driven by the outcome of the last calls kept in a fixed-size ring buffer.
+ *
+ * <ul>
+ *     <li>{@link State#CLOSED}: calls are permitted. Once the window holds at least <code>minimumCalls</code> calls, the
+ *     breaker opens if the rate of failed calls or the rate of slow calls reaches its threshold.</li>
+ *     <li>{@link State#OPEN}: calls are refused for <code>waitDuration</code>, then the breaker becomes half-open.</li>
+ *     <li>{@link State#HALF_OPEN}: only <code>halfOpenCalls</code> trial calls are permitted. Once they have completed,
+ *     the breaker closes if their failure and slow call rates are below the thresholds, and opens again otherwise.</li>
+ * </ul>
+ *
+ * The window is cleared on each transition. State transitions are reported to a {@link Listener}, called while the
+ * breaker is locked: it must not block.
+ *
+ * @author GraviteeSource Team
+ */
+public final class CircuitBreaker {
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN,
+    }
+
+    @FunctionalInterface
+    public interface Listener {
+        void onStateTransition(CircuitBreaker breaker, State from, State to);
+    }
+
+    private static final byte FAILED = 1;
+    private static final byte SLOW = 2;
+
+    private final String name;
+    private final Config config;
+    private final Listener listener;
+    private final LongSupplier clock;
+    private final long slowCallDuration;
+    private final long waitDuration;
+
+    private final byte[] outcomes;
+    private int next;
+    private int calls;
+    private int failedCalls;
+    private int slowCalls;
+
+    private State state = State.CLOSED;
+    private long openedAt;
+    private int halfOpenPermits;
+
+    public CircuitBreaker(final String name, final Config config, final Listener listener) {
+        this(name, config, listener, System::nanoTime);
+    }
+
+    CircuitBreaker(final String name, final Config config, final Listener listener, final LongSupplier clock) {
+        this.name = name;
+        this.config = config;
+        this.listener = listener;
+        this.clock = clock;
+        this.slowCallDuration = TimeUnit.MILLISECONDS.toNanos(config.slowCallDuration);
+        this.waitDuration = TimeUnit.MILLISECONDS.toNanos(config.waitDuration);
+        this.outcomes = new byte[config.windowSize];
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * Check whether a call would be permitted, without acquiring the permission.
+     */
+    public synchronized boolean isCallPermitted() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                return clock.getAsLong() - openedAt >= waitDuration;
+            default:
+                return halfOpenPermits > 0;
+        }
+    }
+
+    /**
+     * Acquire the permission to make a call. The outcome of a permitted call must then be recorded with
+     * {@link #onResult(long, boolean)}.
+     *
+     * @return <code>true</code> if the call is permitted
+     */
+    public synchronized boolean tryAcquire() {
+        if (state == State.CLOSED) {
+            return true;
+        }
+        if (state == State.OPEN) {
+            if (clock.getAsLong() - openedAt < waitDuration) {
+                return false;
+            }
+            transition(State.HALF_OPEN);
+        }
+        if (halfOpenPermits > 0) {
+            halfOpenPermits--;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Record the outcome of a permitted call.
+     *
+     * @param duration duration of the call, in nanoseconds
+     * @param failed <code>true</code> if the call has failed
+     */
+    public synchronized void onResult(final long duration, final boolean failed) {
+        if (state == State.OPEN) {
+            // Call started before the breaker opened
+            return;
+        }
+
+        final byte outcome = (byte) ((failed ? FAILED : 0) | (duration >= slowCallDuration ? SLOW : 0));
+        if (calls == outcomes.length) {
+            count(outcomes[next], -1);
+        } else {
+            calls++;
+        }
+        outcomes[next] = outcome;
+        count(outcome, 1);
+        next = (next + 1) % outcomes.length;
+
+        if (state == State.HALF_OPEN) {
+            if (calls >= config.halfOpenCalls) {
+                transition(isAboveThresholds() ? State.OPEN : State.CLOSED);
+            }
+        } else if (calls >= config.minimumCalls && isAboveThresholds()) {
+            transition(State.OPEN);
+        }
+    }
+
+    /**
+     * Let trial calls through before the end of the wait duration, e.g. once the target is known to be reachable again.
+     */
+    public synchronized void halfOpen() {
+        if (state == State.OPEN) {
+            transition(State.HALF_OPEN);
+        }
+    }
+
+    /**
+     * @return the rate of failed calls in the window, in percent, or -1 if the window is empty
+     */
+    public synchronized float getFailureRate() {
+        return calls == 0 ? -1 : failedCalls * 100f / calls;
+    }
+
+    /**
+     * @return the rate of slow calls in the window, in percent, or -1 if the window is empty
+     */
+    public synchronized float getSlowCallRate() {
+        return calls == 0 ? -1 : slowCalls * 100f / calls;
+    }
+
+    private void count(final byte outcome, final int delta) {
+        if ((outcome & FAILED) != 0) {
+            failedCalls += delta;
+        }
+        if ((outcome & SLOW) != 0) {
+            slowCalls += delta;
+        }
+    }
+
+    private boolean isAboveThresholds() {
+        return (failedCalls * 100f >= config.failureRateThreshold * calls || slowCalls * 100f >= config.slowCallRateThreshold * calls);
+    }
+
+    private void transition(final State to) {
+        final State from = state;
+        state = to;
+        if (to == State.OPEN) {
+            openedAt = clock.getAsLong();
+        } else if (to == State.HALF_OPEN) {
+            halfOpenPermits = config.halfOpenCalls;
+        }
+        // The listener still sees the rates which caused the transition
+        if (listener != null) {
+            listener.onStateTransition(this, from, to);
+        }
+        next = 0;
+        calls = 0;
+        failedCalls = 0;
+        slowCalls = 0;
+    }
+
+    public static final class Config {
+
+        private final int windowSize;
+        private final int minimumCalls;
+        private final float failureRateThreshold;
+        private final float slowCallRateThreshold;
+        private final long slowCallDuration;
+        private final long waitDuration;
+        private final int halfOpenCalls;
+
+        /**
+         * @param windowSize number of calls kept in the window
+         * @param minimumCalls number of calls required before the rates are evaluated
+         * @param failureRateThreshold rate of failed calls (in percent) above which the breaker opens
+         * @param slowCallRateThreshold rate of slow calls (in percent) above which the breaker opens
+         * @param slowCallDuration duration (in milliseconds) from which a call is slow
+         * @param waitDuration delay (in milliseconds) during which an open breaker refuses calls
+         * @param halfOpenCalls number of trial calls permitted while half-open
+         */
+        public Config(
+            final int windowSize,
+            final int minimumCalls,
+            final float failureRateThreshold,
+            final float slowCallRateThreshold,
+            final long slowCallDuration,
+            final long waitDuration,
+            final int halfOpenCalls
+        ) {
+            if (windowSize <= 0 || minimumCalls <= 0 || halfOpenCalls <= 0) {
+                throw new IllegalArgumentException("Circuit breaker window size, minimum calls and half-open calls must be positive");
+            }
+            if (halfOpenCalls > windowSize) {
+                throw new IllegalArgumentException("Circuit breaker half-open calls must not exceed the window size");
+            }
+            if (failureRateThreshold <= 0 || failureRateThreshold > 100 || slowCallRateThreshold <= 0 || slowCallRateThreshold > 100) {
+                throw new IllegalArgumentException("Circuit breaker rate thresholds must be between 0 (excluded) and 100");
+            }
+            this.windowSize = windowSize;
+            this.minimumCalls = Math.min(minimumCalls, windowSize);
+            this.failureRateThreshold = failureRateThreshold;
+            this.slowCallRateThreshold = slowCallRateThreshold;
+            this.slowCallDuration = slowCallDuration;
+            this.waitDuration = waitDuration;
+            this.halfOpenCalls = halfOpenCalls;
+        }
+
+        public static Config defaults() {
+            return new Config(20, 10, 50, 80, 10000, 30000, 3);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.notifier.email.dispatch;
+
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Thrown when an email is not sent because the circuit breaker of its SMTP target is open. The failure is transient:
+ * the email can be spooled, but it is not retried right away.
+ *
+ * @author GraviteeSource Team
+ */
+public class CircuitOpenException extends RejectedExecutionException {
+
+    public CircuitOpenException(final String target) {
+        super("Circuit breaker of SMTP target " + target + " is open");
+    }
+}
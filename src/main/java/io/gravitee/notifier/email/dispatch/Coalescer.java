@@ -0,0 +1,269 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.notifier.email.dispatch;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.ext.mail.MailAttachment;
+import io.vertx.ext.mail.MailMessage;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Coalesces the emails having the same recipients, subject and template within a time window.
+ *
+ * The first email of a window is sent right away. The following ones are held until the end of the window, and then sent
+ * as a single digest email made of the bodies of their HTML documents. Held emails are considered sent as soon as they
+ * are accepted into the digest, their callers do not wait for the end of the window.
+ *
+ * Windows are indexed by a 64-bit hash of their key, the index being bounded: when it is full, the oldest window is
+ * closed early.
+ *
+ * @author GraviteeSource Team
+ */
+public class Coalescer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(Coalescer.class);
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final LinkedHashMap<Long, Window> windows = new LinkedHashMap<>();
+    private final LongAdder saved = new LongAdder();
+    private volatile int maximumSize;
+
+    public Coalescer(final int maximumSize) {
+        setMaximumSize(maximumSize);
+    }
+
+    public void setMaximumSize(final int maximumSize) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("Coalescing index size must be positive");
+        }
+        this.maximumSize = maximumSize;
+    }
+
+    /**
+     * Send an email, or hold it until the end of the window it belongs to.
+     *
+     * @param vertx the Vert.x instance used to close the window
+     * @param window duration (in milliseconds) of the window
+     * @param mailMessage the email to send
+     * @param template the template the email has been rendered from
+     * @param target identifier of the SMTP settings used to send the email
+     * @param sender sends an email
+     * @return the result of the send of the email, or a completed future if it has been accepted into a digest
+     */
+    public Future<Void> send(
+        final Vertx vertx,
+        final long window,
+        final MailMessage mailMessage,
+        final String template,
+        final String target,
+        final Function<MailMessage, Future<?>> sender
+    ) {
+        final long hash = hash(mailMessage.getTo(), mailMessage.getSubject(), template, target);
+        Window evicted = null;
+
+        synchronized (windows) {
+            final Window current = windows.get(hash);
+            if (current != null) {
+                if (current.matches(mailMessage, template, target)) {
+                    current.held.add(mailMessage);
+                    return Future.succeededFuture();
+                }
+                // Hash collision, do not coalesce
+                return sender.apply(mailMessage).mapEmpty();
+            }
+
+            if (windows.size() >= maximumSize) {
+                final Iterator<Window> oldest = windows.values().iterator();
+                evicted = oldest.next();
+                oldest.remove();
+            }
+
+            final Window opened = new Window(hash, mailMessage, template, target, sender);
+            windows.put(hash, opened);
+            vertx.setTimer(window, timerId -> close(opened));
+        }
+
+        if (evicted != null) {
+            flush(evicted);
+        }
+        return sender.apply(mailMessage).mapEmpty();
+    }
+
+    /**
+     * @return the number of emails which have not been sent thanks to the digests
+     */
+    public long saved() {
+        return saved.sum();
+    }
+
+    /**
+     * @return the number of open windows
+     */
+    public int size() {
+        synchronized (windows) {
+            return windows.size();
+        }
+    }
+
+    private void close(final Window window) {
+        synchronized (windows) {
+            if (!windows.remove(window.hash, window)) {
+                // Already evicted
+                return;
+            }
+        }
+        flush(window);
+    }
+
+    private void flush(final Window window) {
+        final List<MailMessage> held = window.held;
+        if (held.isEmpty()) {
+            return;
+        }
+
+        final MailMessage mailMessage;
+        if (held.size() == 1) {
+            mailMessage = held.get(0);
+        } else {
+            mailMessage = digest(held);
+            saved.add(held.size() - 1);
+            LOGGER.debug("Coalesced {} emails to {} into a single digest", held.size(), mailMessage.getTo());
+        }
+
+        window.sender
+            .apply(mailMessage)
+            .onFailure(t -> LOGGER.error("Unable to send digest of {} emails to {}", held.size(), mailMessage.getTo(), t));
+    }
+
+    private static MailMessage digest(final List<MailMessage> mailMessages) {
+        final MailMessage first = mailMessages.get(0);
+        final StringBuilder html = new StringBuilder();
+        final List<MailAttachment> inlineAttachments = new ArrayList<>();
+        final Set<String> contentIds = new HashSet<>();
+
+        for (int i = 0; i < mailMessages.size(); i++) {
+            final MailMessage mailMessage = mailMessages.get(i);
+            if (i > 0) {
+                html.append("<hr/>");
+            }
+            if (mailMessage.getHtml() != null) {
+                appendBody(html, mailMessage.getHtml());
+            }
+            if (mailMessage.getInlineAttachment() != null) {
+                // Images shared by the emails are attached once
+                for (MailAttachment attachment : mailMessage.getInlineAttachment()) {
+                    if (attachment.getContentId() == null || contentIds.add(attachment.getContentId())) {
+                        inlineAttachments.add(attachment);
+                    }
+                }
+            }
+        }
+
+        return new MailMessage()
+            .setFrom(first.getFrom())
+            .setTo(first.getTo())
+            .setSubject(first.getSubject() + " (" + mailMessages.size() + " notifications)")
+            .setHtml(html.toString())
+            .setInlineAttachment(inlineAttachments.isEmpty() ? null : inlineAttachments);
+    }
+
+    /**
+     * Append the content of the <code>body</code> element of the given HTML document, or the whole document if it has
+     * none.
+     */
+    static void appendBody(final StringBuilder builder, final String html) {
+        final String lowerCase = html.toLowerCase(Locale.ROOT);
+        final int open = lowerCase.indexOf("<body");
+        final int start = open < 0 ? -1 : lowerCase.indexOf('>', open);
+        final int end = lowerCase.lastIndexOf("</body");
+        if (start < 0 || end <= start) {
+            builder.append(html);
+        } else {
+            builder.append(html, start + 1, end);
+        }
+    }
+
+    static long hash(final List<String> recipients, final String subject, final String template, final String target) {
+        long hash = FNV_OFFSET_BASIS;
+        if (recipients != null) {
+            for (String recipient : recipients) {
+                hash = hash(hash, recipient);
+            }
+        }
+        hash = hash(hash, subject);
+        hash = hash(hash, template);
+        return hash(hash, target);
+    }
+
+    private static long hash(long hash, final String value) {
+        if (value != null) {
+            for (int i = 0; i < value.length(); i++) {
+                hash = (hash ^ value.charAt(i)) * FNV_PRIME;
+            }
+        }
+        // Separator, so that ("ab", "c") and ("a", "bc") do not collide
+        return (hash ^ 0xffff) * FNV_PRIME;
+    }
+
+    private static final class Window {
+
+        private final long hash;
+        private final List<String> recipients;
+        private final String subject;
+        private final String template;
+        private final String target;
+        private final Function<MailMessage, Future<?>> sender;
+        private final List<MailMessage> held = new ArrayList<>();
+
+        private Window(
+            final long hash,
+            final MailMessage mailMessage,
+            final String template,
+            final String target,
+            final Function<MailMessage, Future<?>> sender
+        ) {
+            this.hash = hash;
+            this.recipients = mailMessage.getTo();
+            this.subject = mailMessage.getSubject();
+            this.template = template;
+            this.target = target;
+            this.sender = sender;
+        }
+
+        private boolean matches(final MailMessage mailMessage, final String template, final String target) {
+            return (
+                Objects.equals(recipients, mailMessage.getTo()) &&
+                Objects.equals(subject, mailMessage.getSubject()) &&
+                Objects.equals(this.template, template) &&
+                Objects.equals(this.target, target)
+            );
+        }
+    }
+}
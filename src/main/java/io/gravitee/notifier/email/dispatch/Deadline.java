@@ -0,0 +1,124 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.notifier.email.dispatch;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Point in time by which a notification must be sent, propagated through the retries and the SMTP transactions so that
+ * none of them waits past it.
+ *
+ * @author GraviteeSource Team
+ */
+public final class Deadline {
+
+    public static final Deadline NONE = new Deadline(Long.MAX_VALUE, 0, System::nanoTime);
+
+    private final long timeout;
+    private final long expiresAt;
+    private final LongSupplier clock;
+
+    private Deadline(final long timeout, final long expiresAt, final LongSupplier clock) {
+        this.timeout = timeout;
+        this.expiresAt = expiresAt;
+        this.clock = clock;
+    }
+
+    /**
+     * @param timeout the delay (in milliseconds) from now, 0 for no deadline
+     * @return the deadline
+     */
+    public static Deadline after(final long timeout) {
+        return after(timeout, System::nanoTime);
+    }
+
+    static Deadline after(final long timeout, final LongSupplier clock) {
+        return timeout <= 0 ? NONE : new Deadline(timeout, clock.getAsLong() + TimeUnit.MILLISECONDS.toNanos(timeout), clock);
+    }
+
+    /**
+     * @return the time left (in milliseconds), 0 once expired or {@link Long#MAX_VALUE} if there is no deadline
+     */
+    public long remaining() {
+        if (this == NONE) {
+            return Long.MAX_VALUE;
+        }
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(expiresAt - clock.getAsLong()));
+    }
+
+    public boolean isExpired() {
+        return remaining() == 0;
+    }
+
+    /**
+     * @return a {@link TimeoutException} reporting that this deadline has been exceeded
+     */
+    public TimeoutException exceeded() {
+        return new TimeoutException("Email not sent within its deadline of " + timeout + " ms");
+    }
+
+    /**
+     * Fail with {@link #exceeded()} if the given future does not complete before this deadline.
+     */
+    public <T> Future<T> bound(final Vertx vertx, final Future<T> future) {
+        if (this == NONE) {
+            return future;
+        }
+        return timeout(vertx, future, remaining(), this::exceeded);
+    }
+
+    /**
+     * Fail with a {@link TimeoutException} if the given future does not complete within the given delay. The operation
+     * behind the future is not cancelled, only its result is not waited for anymore.
+     *
+     * @param vertx the Vert.x instance used to schedule the timeout
+     * @param future the future to wait for
+     * @param timeout the delay (in milliseconds)
+     * @param exception creates the exception to fail with
+     * @return a future completed with the given future, or failed once the delay has elapsed
+     */
+    public static <T> Future<T> timeout(
+        final Vertx vertx,
+        final Future<T> future,
+        final long timeout,
+        final Supplier<TimeoutException> exception
+    ) {
+        if (future.isComplete()) {
+            return future;
+        }
+        if (timeout <= 0) {
+            return Future.failedFuture(exception.get());
+        }
+
+        final Promise<T> promise = Promise.promise();
+        final long timer = vertx.setTimer(timeout, t -> promise.tryFail(exception.get()));
+        future.onComplete(e -> {
+            vertx.cancelTimer(timer);
+            if (e.succeeded()) {
+                promise.tryComplete(e.result());
+            } else {
+                promise.tryFail(e.cause());
+            }
+        });
+        return promise.future();
+    }
+}
@@ -0,0 +1,293 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.notifier.email.dispatch;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Bounded queue placed in front of the SMTP sends. At most <code>maxInFlight</code> sends run at the same time, the
+ * others wait in a queue of at most <code>capacity</code> entries. When the queue is full, the {@link OverflowPolicy}
+ * decides what happens to the new send. Rejected and dropped sends fail with a {@link DispatchRejectedException}.
+ *
+ * @author GraviteeSource Team
+ */
+public class DispatchQueue {
+
+    public enum OverflowPolicy {
+        /**
+         * Fail the new send.
+         */
+        REJECT,
+        /**
+         * Fail the oldest queued send to make room for the new one.
+         */
+        DROP_OLDEST,
+        /**
+         * Make the new send wait until room is available, up to the block timeout, then fail it. No thread is blocked:
+         * waiting sends are queued apart and moved to the queue as soon as room is made.
+         */
+        BLOCK,
+    }
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ArrayDeque<Task<?>> pending = new ArrayDeque<>();
+    private final ArrayDeque<Task<?>> blocked = new ArrayDeque<>();
+
+    private volatile int capacity;
+    private volatile int maxInFlight;
+    private volatile OverflowPolicy overflowPolicy;
+    private volatile long blockTimeout;
+    private volatile LongConsumer waitTimeListener;
+
+    private int inFlight;
+
+    private final AtomicInteger depth = new AtomicInteger();
+    private final AtomicInteger running = new AtomicInteger();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder dispatched = new LongAdder();
+    private final LongAdder totalWaitTime = new LongAdder();
+    private final AtomicLong maxWaitTime = new AtomicLong();
+
+    public DispatchQueue(int capacity, int maxInFlight, OverflowPolicy overflowPolicy, long blockTimeout) {
+        configure(capacity, maxInFlight, overflowPolicy, blockTimeout);
+    }
+
+    public void configure(int capacity, int maxInFlight, OverflowPolicy overflowPolicy, long blockTimeout) {
+        if (capacity < 0 || maxInFlight <= 0) {
+            throw new IllegalArgumentException("Dispatch queue capacity must not be negative and max in-flight must be positive");
+        }
+        this.capacity = capacity;
+        this.maxInFlight = maxInFlight;
+        this.overflowPolicy = overflowPolicy;
+        this.blockTimeout = blockTimeout;
+    }
+
+    /**
+     * Set the listener notified, for each dispatched send, of the time (in nanoseconds) it waited for an in-flight slot.
+     */
+    public void setWaitTimeListener(final LongConsumer waitTimeListener) {
+        this.waitTimeListener = waitTimeListener;
+    }
+
+    /**
+     * Submit a send to the queue. The action is run as soon as an in-flight slot is available, the slot being released
+     * when the future it returns completes.
+     *
+     * @param vertx the Vert.x instance used to time the sends waiting for room
+     * @param action the send to run
+     * @return the result of the send, or a failed future if it has been rejected or dropped
+     */
+    public <T> Future<T> submit(final Vertx vertx, final Supplier<Future<T>> action) {
+        Task<T> task = new Task<>(action);
+        final Future<T> future = task.promise.future();
+        Task<?> droppedTask = null;
+
+        lock.lock();
+        try {
+            if (inFlight < maxInFlight && pending.isEmpty() && blocked.isEmpty()) {
+                inFlight++;
+            } else {
+                if (pending.size() >= capacity) {
+                    switch (overflowPolicy) {
+                        case DROP_OLDEST:
+                            droppedTask = pending.pollFirst();
+                            if (droppedTask != null) {
+                                depth.decrementAndGet();
+                                break;
+                            }
+                            rejected.increment();
+                            return Future.failedFuture(new DispatchRejectedException("Email dispatch queue is full"));
+                        case BLOCK:
+                            if (blockTimeout <= 0) {
+                                rejected.increment();
+                                return Future.failedFuture(new DispatchRejectedException("Email dispatch queue is full"));
+                            }
+                            final Task<T> waiting = task;
+                            waiting.vertx = vertx;
+                            waiting.timerId = vertx.setTimer(blockTimeout, timerId -> timeout(waiting));
+                            blocked.addLast(waiting);
+                            return future;
+                        default:
+                            rejected.increment();
+                            return Future.failedFuture(new DispatchRejectedException("Email dispatch queue is full"));
+                    }
+                }
+
+                if (inFlight < maxInFlight && pending.isEmpty()) {
+                    inFlight++;
+                } else {
+                    pending.addLast(task);
+                    depth.incrementAndGet();
+                    task = null;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        if (droppedTask != null) {
+            dropped.increment();
+            droppedTask.promise.tryFail(new DispatchRejectedException("Email dropped from the full dispatch queue"));
+        }
+        if (task != null) {
+            run(task);
+        }
+        return future;
+    }
+
+    private void timeout(final Task<?> task) {
+        final boolean removed;
+        lock.lock();
+        try {
+            removed = blocked.remove(task);
+        } finally {
+            lock.unlock();
+        }
+
+        if (removed) {
+            rejected.increment();
+            task.promise.tryFail(new DispatchRejectedException("Email dispatch queue is still full after " + blockTimeout + " ms"));
+        }
+    }
+
+    /**
+     * Take the oldest send waiting for room, if any. Must be called while holding the lock.
+     */
+    private Task<?> unblock() {
+        final Task<?> task = blocked.pollFirst();
+        if (task != null) {
+            task.vertx.cancelTimer(task.timerId);
+        }
+        return task;
+    }
+
+    private <T> void run(final Task<T> task) {
+        final long waitTime = System.nanoTime() - task.submittedAt;
+        totalWaitTime.add(waitTime);
+        maxWaitTime.accumulateAndGet(waitTime, Math::max);
+        final LongConsumer listener = waitTimeListener;
+        if (listener != null) {
+            listener.accept(waitTime);
+        }
+        dispatched.increment();
+        running.incrementAndGet();
+
+        Future<T> future;
+        try {
+            future = task.action.get();
+        } catch (Throwable t) {
+            future = Future.failedFuture(t);
+        }
+
+        future.onComplete(result -> {
+            running.decrementAndGet();
+            if (result.succeeded()) {
+                task.promise.tryComplete(result.result());
+            } else {
+                task.promise.tryFail(result.cause());
+            }
+            next();
+        });
+    }
+
+    private void next() {
+        Task<?> next;
+        lock.lock();
+        try {
+            next = pending.pollFirst();
+            if (next == null) {
+                // Without queue capacity, a waiting send directly takes the in-flight slot
+                next = unblock();
+                if (next == null) {
+                    inFlight--;
+                }
+            } else {
+                depth.decrementAndGet();
+                final Task<?> waiting = unblock();
+                if (waiting != null) {
+                    pending.addLast(waiting);
+                    depth.incrementAndGet();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        if (next != null) {
+            run(next);
+        }
+    }
+
+    /**
+     * @return the number of sends waiting for an in-flight slot
+     */
+    public int depth() {
+        return depth.get();
+    }
+
+    /**
+     * @return the number of sends currently running
+     */
+    public int inFlight() {
+        return running.get();
+    }
+
+    public long rejected() {
+        return rejected.sum();
+    }
+
+    public long dropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * @return the average time (in milliseconds) spent by the sends waiting for an in-flight slot
+     */
+    public double averageWaitTime() {
+        final long count = dispatched.sum();
+        return count == 0 ? 0 : totalWaitTime.sum() / (double) count / 1_000_000;
+    }
+
+    /**
+     * @return the longest time (in milliseconds) spent by a send waiting for an in-flight slot
+     */
+    public double maxWaitTime() {
+        return maxWaitTime.get() / 1_000_000d;
+    }
+
+    private static final class Task<T> {
+
+        private final Supplier<Future<T>> action;
+        private final Promise<T> promise = Promise.promise();
+        private final long submittedAt = System.nanoTime();
+        private Vertx vertx;
+        private long timerId;
+
+        private Task(Supplier<Future<T>> action) {
+            this.action = action;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.notifier.email.dispatch;
+
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Thrown when an email is rejected or dropped by the {@link DispatchQueue} because it is full. The failure is
+ * permanent: retrying or spooling the email would only add to the load which made the queue overflow.
+ *
+ * @author GraviteeSource Team
+ */
+public class DispatchRejectedException extends RejectedExecutionException {
+
+    public DispatchRejectedException(final String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,70 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.notifier.email.dispatch;
+
+import io.gravitee.notifier.email.client.SmtpSettings;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Token buckets shared by all the notifiers sending through the same SMTP account, i.e. the same host and username.
+ *
+ * @author GraviteeSource Team
+ */
+public class RateLimiters {
+
+    private final ConcurrentMap<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+
+    /**
+     * Get the bucket of the account targeted by the given settings, creating it if needed. The bucket is replaced if its
+     * rate or burst have changed.
+     *
+     * @param rate maximum number of sends per second, 0 for no limit
+     * @param burst maximum number of sends in a burst, 0 to use the rate
+     * @return the bucket, or <code>null</code> if the sends are not limited
+     */
+    public TokenBucket get(final SmtpSettings settings, final int rate, final int burst) {
+        final String key = key(settings);
+        if (rate <= 0) {
+            buckets.remove(key);
+            return null;
+        }
+
+        final int effectiveBurst = burst > 0 ? burst : rate;
+        final TokenBucket current = buckets.get(key);
+        if (current != null && current.getRate() == rate && current.getBurst() == effectiveBurst) {
+            return current;
+        }
+        return buckets.compute(
+            key,
+            (k, bucket) ->
+                bucket != null && bucket.getRate() == rate && bucket.getBurst() == effectiveBurst
+                    ? bucket
+                    : new TokenBucket(rate, effectiveBurst)
+        );
+    }
+
+    /**
+     * @return the bucket of the account targeted by the given settings, or <code>null</code> if the sends are not limited
+     */
+    public TokenBucket find(final SmtpSettings settings) {
+        return buckets.get(key(settings));
+    }
+
+    private static String key(final SmtpSettings settings) {
+        return settings.getHost() + '\u0000' + settings.getUsername();
+    }
+}
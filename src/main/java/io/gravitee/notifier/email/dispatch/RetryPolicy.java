@@ -0,0 +1,146 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.notifier.email.dispatch;
+
+import io.gravitee.notifier.email.configuration.EmailNotifierConfiguration;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.IntFunction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Retries the sends failing with a transient error (see {@link SmtpFailures}), with an exponential backoff and jitter.
+ * The delay before the attempt <code>n + 1</code> is <code>min(maxDelay, baseDelay * 2^(n - 1))</code>, randomly
+ * spread by <code>+/- jitter</code> of its value. Retries are scheduled with Vert.x timers.
+ *
+ * @author GraviteeSource Team
+ */
+public final class RetryPolicy {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RetryPolicy.class);
+
+    public static final int DEFAULT_MAX_ATTEMPTS = 3;
+    public static final long DEFAULT_BASE_DELAY = 1000;
+    public static final long DEFAULT_MAX_DELAY = 30000;
+
+    private final int maxAttempts;
+    private final long baseDelay;
+    private final long maxDelay;
+    private final double jitter;
+
+    public RetryPolicy(final int maxAttempts, final long baseDelay, final long maxDelay, final double jitter) {
+        this.maxAttempts = maxAttempts > 0 ? maxAttempts : DEFAULT_MAX_ATTEMPTS;
+        this.baseDelay = baseDelay > 0 ? baseDelay : DEFAULT_BASE_DELAY;
+        this.maxDelay = Math.max(this.baseDelay, maxDelay > 0 ? maxDelay : DEFAULT_MAX_DELAY);
+        this.jitter = Math.min(1, Math.max(0, jitter));
+    }
+
+    public static RetryPolicy of(final EmailNotifierConfiguration configuration) {
+        return new RetryPolicy(
+            configuration.getRetryMaxAttempts(),
+            configuration.getRetryBaseDelay(),
+            configuration.getRetryMaxDelay(),
+            configuration.getRetryJitter()
+        );
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * Compute the delay to wait for after the given attempt has failed.
+     *
+     * @param attempt the failed attempt, starting at 1
+     * @return the delay in milliseconds
+     */
+    long delay(final int attempt) {
+        final int shift = Math.min(Math.max(attempt - 1, 0), 62);
+        final long delay = baseDelay > (maxDelay >> shift) ? maxDelay : baseDelay << shift;
+        if (jitter == 0) {
+            return Math.max(1, delay);
+        }
+        final double spread = 1 + jitter * (2 * ThreadLocalRandom.current().nextDouble() - 1);
+        return Math.max(1, Math.round(delay * spread));
+    }
+
+    /**
+     * Run the given action until it succeeds, fails with a permanent error or the maximum number of attempts is reached.
+     * A send refused by an open circuit breaker fails right away, without waiting for the retry delays.
+     *
+     * @param vertx the Vert.x instance used to schedule the retries
+     * @param action the action to run, given the attempt number starting at 1
+     * @return the result of the last attempt, the failure of the first attempt if it is permanent, or a
+     * {@link SendFailedException} reporting the number of attempts
+     */
+    public <T> Future<T> execute(final Vertx vertx, final IntFunction<Future<T>> action) {
+        return execute(vertx, Deadline.NONE, action);
+    }
+
+    /**
+     * Same as {@link #execute(Vertx, IntFunction)}, without retrying once the retry delay would end past the given
+     * deadline.
+     *
+     * @param vertx the Vert.x instance used to schedule the retries
+     * @param deadline the deadline of the send
+     * @param action the action to run, given the attempt number starting at 1
+     * @return the result of the last attempt, the failure of the first attempt if it is permanent, or a
+     * {@link SendFailedException} reporting the number of attempts
+     */
+    public <T> Future<T> execute(final Vertx vertx, final Deadline deadline, final IntFunction<Future<T>> action) {
+        final Promise<T> promise = Promise.promise();
+        attempt(vertx, deadline, action, 1, promise);
+        return promise.future();
+    }
+
+    private <T> void attempt(
+        final Vertx vertx,
+        final Deadline deadline,
+        final IntFunction<Future<T>> action,
+        final int attempt,
+        final Promise<T> promise
+    ) {
+        Future<T> result;
+        try {
+            result = action.apply(attempt);
+        } catch (RuntimeException ex) {
+            result = Future.failedFuture(ex);
+        }
+
+        result.onComplete(e -> {
+            if (e.succeeded()) {
+                promise.complete(e.result());
+            } else if (attempt == 1 && !SmtpFailures.isTransient(e.cause())) {
+                // Nothing was retried, the failure is reported as is
+                promise.fail(e.cause());
+            } else if (attempt >= maxAttempts || !SmtpFailures.isTransient(e.cause()) || e.cause() instanceof CircuitOpenException) {
+                promise.fail(new SendFailedException(attempt, e.cause()));
+            } else {
+                final long delay = delay(attempt);
+                if (delay >= deadline.remaining()) {
+                    LOGGER.debug("Attempt {}/{} to send email failed, no time left to retry", attempt, maxAttempts, e.cause());
+                    promise.fail(new SendFailedException(attempt, e.cause()));
+                    return;
+                }
+                LOGGER.debug("Attempt {}/{} to send email failed, retrying in {} ms", attempt, maxAttempts, delay, e.cause());
+                vertx.setTimer(delay, timerId -> attempt(vertx, deadline, action, attempt + 1, promise));
+            }
+        });
+    }
+}
@@ -0,0 +1,31 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.notifier.email.dispatch;
+
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Thrown when an SMTP transaction does not complete within its send timeout. The transaction is not interrupted and the
+ * email may still be delivered, so the failure is permanent: retrying or spooling the email could send it twice.
+ *
+ * @author GraviteeSource Team
+ */
+public class SendTimeoutException extends TimeoutException {
+
+    public SendTimeoutException(final String message) {
+        super(message);
+    }
+}
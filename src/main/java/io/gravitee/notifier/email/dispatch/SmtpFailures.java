@@ -0,0 +1,83 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.notifier.email.dispatch;
+
+import java.io.IOException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Classifies SMTP send failures. Connection errors, 4xx replies and rejections (e.g. an open circuit breaker) are
+ * transient: the same email may be sent successfully later. 5xx replies, emails rejected by the full dispatch queue, SMTP
+ * transactions which timed out (and may still deliver the email) and any other error are permanent.
+ *
+ * @author GraviteeSource Team
+ */
+public final class SmtpFailures {
+
+    private static final Pattern REPLY_CODE = Pattern.compile("(?:^|\\s)([2-5]\\d\\d)(?:[\\s-]|$)");
+
+    private SmtpFailures() {}
+
+    public static boolean isTransient(final Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SendFailedException) {
+                // Only reports the number of attempts, the cause is the actual failure
+                continue;
+            }
+            if (cause instanceof DispatchRejectedException || cause instanceof SendTimeoutException) {
+                return false;
+            }
+            if (cause instanceof IOException || cause instanceof TimeoutException || cause instanceof RejectedExecutionException) {
+                return true;
+            }
+
+            final int replyCode = replyCode(cause);
+            if (replyCode > 0) {
+                return replyCode >= 400 && replyCode < 500;
+            }
+
+            final String message = cause.getMessage();
+            if (message != null) {
+                final String lowerCase = message.toLowerCase();
+                if (lowerCase.contains("connection") && (lowerCase.contains("closed") || lowerCase.contains("reset"))) {
+                    return true;
+                }
+            }
+
+            if (cause.getCause() == cause) {
+                break;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Extract the SMTP reply code reported by the given failure.
+     *
+     * @return the reply code, or -1 if the failure does not report any
+     */
+    public static int replyCode(final Throwable failure) {
+        final String message = failure.getMessage();
+        if (message == null) {
+            return -1;
+        }
+        final Matcher matcher = REPLY_CODE.matcher(message);
+        return matcher.find() ? Integer.parseInt(matcher.group(1)) : -1;
+    }
+}
@@ -0,0 +1,100 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.notifier.email.dispatch;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Lock-free token bucket, allowing <code>rate</code> sends per second with bursts of up to <code>burst</code> sends.
+ *
+ * The bucket is implemented as a virtual schedule: a single atomic holds the time at which the bucket will be full
+ * again. Taking a token moves it forward by one emission interval, and the caller waits for the time at which the token
+ * becomes available. Tokens are therefore handed out in order, without polling.
+ *
+ * @author GraviteeSource Team
+ */
+public final class TokenBucket {
+
+    private final long interval;
+    private final long tolerance;
+    private final int rate;
+    private final int burst;
+    private final LongSupplier clock;
+    private final AtomicLong fullAt;
+
+    public TokenBucket(final int rate, final int burst) {
+        this(rate, burst, System::nanoTime);
+    }
+
+    TokenBucket(final int rate, final int burst, final LongSupplier clock) {
+        if (rate <= 0) {
+            throw new IllegalArgumentException("Rate must be positive");
+        }
+        this.rate = rate;
+        this.burst = burst > 0 ? burst : rate;
+        this.interval = TimeUnit.SECONDS.toNanos(1) / rate;
+        this.tolerance = interval * (this.burst - 1);
+        this.clock = clock;
+        this.fullAt = new AtomicLong(clock.getAsLong());
+    }
+
+    public int getRate() {
+        return rate;
+    }
+
+    public int getBurst() {
+        return burst;
+    }
+
+    /**
+     * Take a token.
+     *
+     * @return the delay (in nanoseconds) to wait for before the token can be used, 0 if it can be used right away
+     */
+    public long reserve() {
+        while (true) {
+            final long now = clock.getAsLong();
+            final long current = fullAt.get();
+            final long start = current - now > 0 ? current : now;
+            if (fullAt.compareAndSet(current, start + interval)) {
+                final long wait = start - tolerance - now;
+                return wait > 0 ? wait : 0;
+            }
+        }
+    }
+
+    /**
+     * Take a token, waiting asynchronously until it can be used.
+     *
+     * @param vertx the Vert.x instance used to wait
+     * @return a future completed once the token can be used
+     */
+    public Future<Void> acquire(final Vertx vertx) {
+        // Rounded up, the token must not be used before it is available
+        final long wait = (reserve() + 999_999) / 1_000_000;
+        if (wait == 0) {
+            return Future.succeededFuture();
+        }
+        final Promise<Void> promise = Promise.promise();
+        vertx.setTimer(wait, timerId -> promise.complete());
+        return promise.future();
+    }
+}
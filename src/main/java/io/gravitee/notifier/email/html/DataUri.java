@@ -0,0 +1,203 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.notifier.email.html;
+
+import io.netty.buffer.Unpooled;
+import io.vertx.core.buffer.Buffer;
+import java.util.Arrays;
+
+/**
+ * Single-pass parser of base64 data URIs (<code>data:image/png;base64,...</code>).
+ *
+ * The URI is read in place from the enclosing text: the MIME type is the only string extracted, and the payload is
+ * decoded straight into a byte array of the exact decoded size. Whitespace in the payload is ignored.
+ *
+ * @author GraviteeSource Team
+ */
+public final class DataUri {
+
+    private static final String SCHEME = "data:";
+    private static final String BASE64 = ";base64";
+
+    private static final byte[] DECODE = new byte[128];
+
+    static {
+        Arrays.fill(DECODE, (byte) -1);
+        final String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+        for (int i = 0; i < alphabet.length(); i++) {
+            DECODE[alphabet.charAt(i)] = (byte) i;
+        }
+        // URL-safe alphabet
+        DECODE['-'] = 62;
+        DECODE['_'] = 63;
+    }
+
+    private final String mimeType;
+    private final Buffer data;
+
+    private DataUri(final String mimeType, final Buffer data) {
+        this.mimeType = mimeType;
+        this.data = data;
+    }
+
+    /**
+     * @return the lower-cased MIME type, or an empty string if the URI does not declare it
+     */
+    public String getMimeType() {
+        return mimeType;
+    }
+
+    /**
+     * @return the decoded data
+     */
+    public Buffer getData() {
+        return data;
+    }
+
+    /**
+     * Parse the base64 data URI found between the given indexes of a text.
+     *
+     * @throws IllegalArgumentException if the text is not a valid base64 data URI
+     */
+    public static DataUri parse(final CharSequence text, final int start, final int end) {
+        int from = start;
+        int to = end;
+        while (from < to && Character.isWhitespace(text.charAt(from))) {
+            from++;
+        }
+        while (to > from && Character.isWhitespace(text.charAt(to - 1))) {
+            to--;
+        }
+        if (!regionMatches(text, from, to, SCHEME)) {
+            throw new IllegalArgumentException("Not a data URI");
+        }
+
+        final int comma = indexOf(text, ',', from, to);
+        if (comma < 0) {
+            throw new IllegalArgumentException("Invalid data URI, no payload");
+        }
+
+        final int mimeTypeStart = from + SCHEME.length();
+        int mimeTypeEnd = indexOf(text, ';', mimeTypeStart, comma);
+        if (mimeTypeEnd < 0) {
+            mimeTypeEnd = comma;
+        }
+        if (comma - BASE64.length() < mimeTypeEnd || !regionMatches(text, comma - BASE64.length(), comma, BASE64)) {
+            throw new IllegalArgumentException("Unsupported data URI, only base64 encoded data is supported");
+        }
+
+        return new DataUri(mimeType(text, mimeTypeStart, mimeTypeEnd), Buffer.buffer(Unpooled.wrappedBuffer(decode(text, comma + 1, to))));
+    }
+
+    /**
+     * Extract the MIME type of a data URI.
+     *
+     * @return the lower-cased MIME type, or an empty string if the value is not a data URI declaring a MIME type
+     */
+    public static String mimeType(final CharSequence uri) {
+        if (!regionMatches(uri, 0, uri.length(), SCHEME)) {
+            return "";
+        }
+        final int comma = indexOf(uri, ',', SCHEME.length(), uri.length());
+        if (comma < 0) {
+            return "";
+        }
+        final int semicolon = indexOf(uri, ';', SCHEME.length(), comma);
+        return mimeType(uri, SCHEME.length(), semicolon < 0 ? comma : semicolon);
+    }
+
+    private static String mimeType(final CharSequence text, final int start, final int end) {
+        if (indexOf(text, '/', start, end) < 0) {
+            return "";
+        }
+        final StringBuilder mimeType = new StringBuilder(end - start);
+        for (int i = start; i < end; i++) {
+            mimeType.append(Character.toLowerCase(text.charAt(i)));
+        }
+        return mimeType.toString();
+    }
+
+    private static byte[] decode(final CharSequence text, final int start, final int end) {
+        // First pass to size the output exactly, the payload being possibly wrapped or padded
+        int length = 0;
+        for (int i = start; i < end; i++) {
+            final char c = text.charAt(i);
+            if (c == '=') {
+                break;
+            }
+            if (!Character.isWhitespace(c)) {
+                length++;
+            }
+        }
+        if (length % 4 == 1) {
+            throw new IllegalArgumentException("Invalid base64 data, truncated payload");
+        }
+
+        final byte[] decoded = new byte[length / 4 * 3 + Math.max(0, length % 4 - 1)];
+        int position = 0;
+        int bits = 0;
+        int count = 0;
+        for (int i = start; i < end; i++) {
+            final char c = text.charAt(i);
+            if (c == '=') {
+                break;
+            }
+            if (Character.isWhitespace(c)) {
+                continue;
+            }
+            final int value = c < 128 ? DECODE[c] : -1;
+            if (value < 0) {
+                throw new IllegalArgumentException("Invalid base64 character '" + c + "'");
+            }
+            bits = (bits << 6) | value;
+            if (++count == 4) {
+                decoded[position++] = (byte) (bits >> 16);
+                decoded[position++] = (byte) (bits >> 8);
+                decoded[position++] = (byte) bits;
+                bits = 0;
+                count = 0;
+            }
+        }
+        if (count == 2) {
+            decoded[position] = (byte) (bits >> 4);
+        } else if (count == 3) {
+            decoded[position++] = (byte) (bits >> 10);
+            decoded[position] = (byte) (bits >> 2);
+        }
+        return decoded;
+    }
+
+    private static boolean regionMatches(final CharSequence text, final int start, final int end, final String value) {
+        if (end - start < value.length()) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            if (Character.toLowerCase(text.charAt(start + i)) != value.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int indexOf(final CharSequence text, final char c, final int start, final int end) {
+        for (int i = start; i < end; i++) {
+            if (text.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
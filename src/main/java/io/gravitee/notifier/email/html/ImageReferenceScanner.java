@@ -0,0 +1,257 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.notifier.email.html;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Lexical scanner locating the <code>src</code> attribute of the <code>&lt;img&gt;</code> elements of an HTML document,
+ * without building a DOM. Comments are skipped, everything else is left untouched so the document can be rewritten by
+ * replacing the attribute values in place.
+ *
+ * @author GraviteeSource Team
+ */
+public final class ImageReferenceScanner {
+
+    private static final String COMMENT_START = "<!--";
+    private static final String COMMENT_END = "-->";
+
+    private ImageReferenceScanner() {}
+
+    /**
+     * Find the <code>src</code> attribute values of the images of the given HTML document.
+     *
+     * @param html the HTML document
+     * @return the image references, in document order, or an empty list if the document has no image
+     */
+    public static List<ImageReference> scan(final CharSequence html) {
+        List<ImageReference> references = Collections.emptyList();
+        final int length = html.length();
+        int pos = 0;
+
+        while ((pos = indexOf(html, '<', pos)) >= 0) {
+            if (regionMatches(html, pos, COMMENT_START)) {
+                final int end = indexOf(html, COMMENT_END, pos + COMMENT_START.length());
+                pos = end < 0 ? length : end + COMMENT_END.length();
+            } else if (isImageTag(html, pos)) {
+                final ImageReference reference = new ImageReference();
+                pos = scanAttributes(html, pos + 4, reference);
+                // Not extracted: the value may be a large data URI
+                if (reference.valueStart >= 0 && !reference.isBlank(html)) {
+                    if (references.isEmpty()) {
+                        references = new ArrayList<>(4);
+                    }
+                    references.add(reference);
+                }
+            } else {
+                pos++;
+            }
+        }
+
+        return references;
+    }
+
+    /**
+     * Scan the attributes of a tag, recording the location of the first <code>src</code> attribute value.
+     *
+     * @return the position following the end of the tag
+     */
+    private static int scanAttributes(final CharSequence html, int pos, final ImageReference reference) {
+        final int length = html.length();
+
+        while (pos < length) {
+            char c = html.charAt(pos);
+            if (c == '>') {
+                return pos + 1;
+            }
+            if (Character.isWhitespace(c) || c == '/') {
+                pos++;
+                continue;
+            }
+
+            final int nameStart = pos;
+            while (pos < length && !isAttributeNameEnd(html.charAt(pos))) {
+                pos++;
+            }
+            final int nameEnd = pos;
+
+            pos = skipWhitespaces(html, pos);
+            if (pos >= length || html.charAt(pos) != '=') {
+                continue;
+            }
+            pos = skipWhitespaces(html, pos + 1);
+            if (pos >= length) {
+                break;
+            }
+
+            final int valueStart;
+            final int valueEnd;
+            c = html.charAt(pos);
+            if (c == '"' || c == '\'') {
+                valueStart = pos + 1;
+                final int closingQuote = indexOf(html, c, valueStart);
+                valueEnd = closingQuote < 0 ? length : closingQuote;
+                pos = valueEnd + 1;
+            } else {
+                valueStart = pos;
+                while (pos < length && !Character.isWhitespace(html.charAt(pos)) && html.charAt(pos) != '>') {
+                    pos++;
+                }
+                valueEnd = pos;
+            }
+
+            if (reference.valueStart < 0 && nameEnd - nameStart == 3 && regionMatches(html, nameStart, "src")) {
+                reference.valueStart = valueStart;
+                reference.valueEnd = valueEnd;
+            }
+        }
+
+        return length;
+    }
+
+    private static boolean isImageTag(final CharSequence html, final int pos) {
+        if (pos + 4 >= html.length() || !regionMatches(html, pos + 1, "img")) {
+            return false;
+        }
+        final char next = html.charAt(pos + 4);
+        return Character.isWhitespace(next) || next == '/' || next == '>';
+    }
+
+    private static boolean isAttributeNameEnd(final char c) {
+        return Character.isWhitespace(c) || c == '=' || c == '>' || c == '/';
+    }
+
+    private static int skipWhitespaces(final CharSequence html, int pos) {
+        while (pos < html.length() && Character.isWhitespace(html.charAt(pos))) {
+            pos++;
+        }
+        return pos;
+    }
+
+    private static int indexOf(final CharSequence html, final char c, final int from) {
+        for (int i = from; i < html.length(); i++) {
+            if (html.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int indexOf(final CharSequence html, final String str, final int from) {
+        for (int i = from; i <= html.length() - str.length(); i++) {
+            if (html.charAt(i) == str.charAt(0) && regionMatches(html, i, str)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Case-insensitive comparison of a region of the document with a lower case ASCII string.
+     */
+    private static boolean regionMatches(final CharSequence html, final int offset, final String lowerCase) {
+        if (offset + lowerCase.length() > html.length()) {
+            return false;
+        }
+        for (int i = 0; i < lowerCase.length(); i++) {
+            if (Character.toLowerCase(html.charAt(offset + i)) != lowerCase.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Location of an image <code>src</code> attribute value in the scanned document.
+     */
+    public static final class ImageReference {
+
+        private int valueStart = -1;
+        private int valueEnd = -1;
+        private String value;
+
+        /**
+         * @return the index of the first character of the attribute value
+         */
+        public int start() {
+            return valueStart;
+        }
+
+        /**
+         * @return the index following the last character of the attribute value
+         */
+        public int end() {
+            return valueEnd;
+        }
+
+        /**
+         * Check whether the trimmed attribute value starts with the given prefix, without extracting it.
+         */
+        public boolean startsWith(final CharSequence html, final String prefix) {
+            final int start = trimmedStart(html);
+            if (valueEnd - start < prefix.length()) {
+                return false;
+            }
+            for (int i = 0; i < prefix.length(); i++) {
+                if (html.charAt(start + i) != prefix.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean isBlank(final CharSequence html) {
+            return trimmedStart(html) == valueEnd;
+        }
+
+        /**
+         * @return the index of the first non whitespace character of the attribute value, or its end if it is blank
+         */
+        private int trimmedStart(final CharSequence html) {
+            int start = valueStart;
+            while (start < valueEnd && Character.isWhitespace(html.charAt(start))) {
+                start++;
+            }
+            return start;
+        }
+
+        /**
+         * @return the trimmed and unescaped attribute value, or <code>null</code> if it is blank
+         */
+        public String value(final CharSequence html) {
+            if (value == null) {
+                final int start = trimmedStart(html);
+                int end = valueEnd;
+                while (end > start && Character.isWhitespace(html.charAt(end - 1))) {
+                    end--;
+                }
+                if (start < end) {
+                    value = unescape(html.subSequence(start, end).toString());
+                }
+            }
+            return value;
+        }
+
+        private static String unescape(final String value) {
+            if (value.indexOf('&') < 0) {
+                return value;
+            }
+            return value.replace("&quot;", "\"").replace("&#39;", "'").replace("&lt;", "<").replace("&gt;", ">").replace("&amp;", "&");
+        }
+    }
+}
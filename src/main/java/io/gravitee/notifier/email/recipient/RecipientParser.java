@@ -0,0 +1,347 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.notifier.email.recipient;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Parses a list of email recipients into their addresses.
+ *
+ * Recipients are separated by commas, semicolons or whitespaces. RFC 5322 mailboxes with a display name
+ * (<code>John Doe &lt;john@example.com&gt;</code>), groups (<code>Team: a@example.com, b@example.com;</code>), quoted
+ * strings and comments are understood; display names, group names and comments are dropped. Invalid addresses are
+ * ignored and duplicates, compared case-insensitively, are removed.
+ *
+ * The last lists parsed are cached, so that the same rendered value is only parsed once.
+ *
+ * @author GraviteeSource Team
+ */
+public class RecipientParser {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RecipientParser.class);
+
+    private static final int MAX_LOCAL_PART_LENGTH = 64;
+    private static final int MAX_ADDRESS_LENGTH = 254;
+
+    /**
+     * Below this number of recipients, duplicates are looked up with a linear scan rather than a hash set.
+     */
+    private static final int LINEAR_DEDUP_THRESHOLD = 16;
+
+    private final AtomicReferenceArray<Entry> entries;
+    private final int mask;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param cacheSize number of parsed lists to keep, rounded up to a power of two
+     */
+    public RecipientParser(final int cacheSize) {
+        final int size = Integer.highestOneBit(Math.max(1, cacheSize - 1) << 1);
+        this.entries = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    /**
+     * Parse the given recipients, returning the cached addresses if the same value has already been parsed.
+     *
+     * @param recipients the recipients
+     * @return the valid addresses, without duplicates. The list must not be modified.
+     */
+    public List<String> parse(final String recipients) {
+        final int index = recipients.hashCode() & mask;
+        final Entry entry = entries.get(index);
+        if (entry != null && entry.recipients.equals(recipients)) {
+            hits.increment();
+            return entry.addresses;
+        }
+
+        misses.increment();
+        final List<String> addresses = Collections.unmodifiableList(tokenize(recipients));
+        entries.set(index, new Entry(recipients, addresses));
+        return addresses;
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    /**
+     * Parse the given recipients, without caching.
+     *
+     * @param recipients the recipients
+     * @return the valid addresses, without duplicates
+     */
+    public static List<String> tokenize(final String recipients) {
+        final Addresses addresses = new Addresses();
+        final int length = recipients.length();
+        int position = 0;
+        while (position < length) {
+            final int end = find(recipients, position, length, ",;");
+            parseMailboxes(recipients, position, end < 0 ? length : end, addresses);
+            position = end < 0 ? length : end + 1;
+        }
+        return addresses.list;
+    }
+
+    /**
+     * Parse the mailboxes found between two separators: an optional group name, then either a mailbox with a display
+     * name or addresses separated by whitespaces.
+     */
+    private static void parseMailboxes(final String value, final int from, final int to, final Addresses addresses) {
+        int position = from;
+        while (position < to) {
+            final int special = find(value, position, to, "<:");
+            if (special < 0) {
+                parseAddresses(value, position, to, addresses);
+                return;
+            }
+
+            if (value.charAt(special) == ':') {
+                // Group name
+                position = special + 1;
+            } else {
+                // Display name
+                final int close = find(value, special + 1, to, ">");
+                if (close < 0) {
+                    addresses.invalid(value.substring(special, to));
+                    return;
+                }
+                addAddress(value, special + 1, close, addresses);
+                position = close + 1;
+            }
+        }
+    }
+
+    private static void parseAddresses(final String value, final int from, final int to, final Addresses addresses) {
+        int position = from;
+        while (position < to) {
+            final char c = value.charAt(position);
+            if (Character.isWhitespace(c)) {
+                position++;
+            } else if (c == '(') {
+                position = skipComment(value, position, to);
+            } else {
+                final int start = position;
+                while (position < to && !Character.isWhitespace(value.charAt(position)) && value.charAt(position) != '(') {
+                    position = next(value, position, to);
+                }
+                addAddress(value, start, position, addresses);
+            }
+        }
+    }
+
+    private static void addAddress(final String value, final int from, final int to, final Addresses addresses) {
+        int start = from;
+        int end = to;
+        while (start < end && Character.isWhitespace(value.charAt(start))) {
+            start++;
+        }
+        while (end > start && Character.isWhitespace(value.charAt(end - 1))) {
+            end--;
+        }
+        if (start == end) {
+            return;
+        }
+
+        if (isValidAddress(value, start, end)) {
+            addresses.add(value.substring(start, end));
+        } else {
+            addresses.invalid(value.substring(start, end));
+        }
+    }
+
+    /**
+     * Find the first of the given characters outside of quoted strings, comments and domain literals.
+     */
+    private static int find(final String value, final int from, final int to, final String characters) {
+        int position = from;
+        while (position < to) {
+            if (characters.indexOf(value.charAt(position)) >= 0) {
+                return position;
+            }
+            position = next(value, position, to);
+        }
+        return -1;
+    }
+
+    /**
+     * @return the position following the character, quoted string, comment or domain literal at the given position
+     */
+    private static int next(final String value, final int position, final int to) {
+        switch (value.charAt(position)) {
+            case '"':
+                return skipDelimited(value, position, to, '"');
+            case '[':
+                return skipDelimited(value, position, to, ']');
+            case '(':
+                return skipComment(value, position, to);
+            default:
+                return position + 1;
+        }
+    }
+
+    private static int skipDelimited(final String value, final int from, final int to, final char close) {
+        int position = from + 1;
+        while (position < to) {
+            final char c = value.charAt(position);
+            if (c == '\\') {
+                position += 2;
+            } else if (c == close) {
+                return position + 1;
+            } else {
+                position++;
+            }
+        }
+        return to;
+    }
+
+    private static int skipComment(final String value, final int from, final int to) {
+        int depth = 0;
+        int position = from;
+        while (position < to) {
+            final char c = value.charAt(position);
+            if (c == '\\') {
+                position++;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')' && --depth == 0) {
+                return position + 1;
+            }
+            position++;
+        }
+        return to;
+    }
+
+    static boolean isValidAddress(final String value, final int from, final int to) {
+        if (to - from > MAX_ADDRESS_LENGTH) {
+            return false;
+        }
+
+        final int at;
+        if (value.charAt(from) == '"') {
+            at = skipDelimited(value, from, to, '"');
+            if (at >= to || value.charAt(at) != '@' || value.charAt(at - 1) != '"' || at - 1 == from) {
+                return false;
+            }
+            for (int i = from + 1; i < at - 1; i++) {
+                if (value.charAt(i) < ' ' && value.charAt(i) != '\t') {
+                    return false;
+                }
+            }
+        } else {
+            at = value.lastIndexOf('@', to - 1);
+            if (at < from || !isDotAtom(value, from, at, false)) {
+                return false;
+            }
+        }
+
+        if (at - from > MAX_LOCAL_PART_LENGTH || at + 1 >= to) {
+            return false;
+        }
+
+        if (value.charAt(at + 1) == '[') {
+            return value.charAt(to - 1) == ']' && skipDelimited(value, at + 1, to, ']') == to;
+        }
+        return isDotAtom(value, at + 1, to, true);
+    }
+
+    /**
+     * Check for a non-empty sequence of atoms separated by single dots. Domain atoms are limited to letters, digits and
+     * hyphens, and cannot start or end with an hyphen.
+     */
+    private static boolean isDotAtom(final String value, final int from, final int to, final boolean domain) {
+        if (from >= to) {
+            return false;
+        }
+        int atomStart = from;
+        for (int i = from; i <= to; i++) {
+            if (i == to || value.charAt(i) == '.') {
+                if (i == atomStart || (domain && (value.charAt(atomStart) == '-' || value.charAt(i - 1) == '-'))) {
+                    return false;
+                }
+                atomStart = i + 1;
+            } else if (!(domain ? isDomainChar(value.charAt(i)) : isAtomChar(value.charAt(i)))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isDomainChar(final char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '-' || c >= 0x80;
+    }
+
+    private static boolean isAtomChar(final char c) {
+        return (
+            (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c >= 0x80 || "!#$%&'*+-/=?^_`{|}~".indexOf(c) >= 0
+        );
+    }
+
+    private static final class Addresses {
+
+        private final List<String> list = new ArrayList<>(4);
+        private Set<String> lowerCased;
+
+        private void add(final String address) {
+            if (lowerCased == null) {
+                for (int i = 0; i < list.size(); i++) {
+                    if (list.get(i).equalsIgnoreCase(address)) {
+                        return;
+                    }
+                }
+                if (list.size() == LINEAR_DEDUP_THRESHOLD) {
+                    lowerCased = new HashSet<>();
+                    for (String existing : list) {
+                        lowerCased.add(existing.toLowerCase(Locale.ROOT));
+                    }
+                }
+            }
+            if (lowerCased == null || lowerCased.add(address.toLowerCase(Locale.ROOT))) {
+                list.add(address);
+            }
+        }
+
+        private void invalid(final String address) {
+            LOGGER.warn("Ignoring invalid email recipient [{}]", address);
+        }
+    }
+
+    private static final class Entry {
+
+        private final String recipients;
+        private final List<String> addresses;
+
+        private Entry(String recipients, List<String> addresses) {
+            this.recipients = recipients;
+            this.addresses = addresses;
+        }
+    }
+}
@@ -0,0 +1,165 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.notifier.email.resource;
+
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.file.AsyncFile;
+import io.vertx.core.file.OpenOptions;
+import io.vertx.ext.mail.MailAttachment;
+import io.vertx.ext.mail.MailMessage;
+import io.vertx.ext.mail.impl.MailAttachmentImpl;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import javax.activation.MimetypesFileTypeMap;
+
+/**
+ * Attachment of a file, which is never loaded into memory: it only references the file until the email is sent. Each
+ * SMTP transaction then reads the file with its own {@link AsyncFile}, which the mail client encodes in base64 chunk by
+ * chunk while writing it to the connection (see {@link #open(Vertx, MailMessage)}). The same attachment can therefore be
+ * shared by several emails, retried or spooled.
+ *
+ * @author GraviteeSource Team
+ */
+public final class FileAttachment extends MailAttachmentImpl {
+
+    private final Path path;
+
+    private FileAttachment(final Path path, final int size) {
+        this.path = path;
+        setName(path.getFileName().toString());
+        setContentType(MimetypesFileTypeMap.getDefaultFileTypeMap().getContentType(path.toFile()));
+        setDisposition("attachment");
+        setSize(size);
+    }
+
+    /**
+     * Reference a file to attach. The file must be located in the given directory, symbolic links included, so that
+     * the parameters of a notification can not be used to send any file readable by the gateway.
+     *
+     * @param directory the directory of the attachments
+     * @param file the file to attach, relative to the directory
+     * @param maxSize the maximum size (in bytes) of the file
+     * @return the attachment
+     * @throws IllegalArgumentException if the file is not located in the directory, is not a regular file or is too large
+     */
+    public static FileAttachment of(final Path directory, final String file, final long maxSize) throws IOException {
+        final Path root = directory.toAbsolutePath().normalize();
+        final Path path = root.resolve(file).normalize();
+        if (!path.startsWith(root) || !Files.isRegularFile(path) || !path.toRealPath().startsWith(root.toRealPath())) {
+            throw new IllegalArgumentException("Invalid email attachment " + file);
+        }
+
+        final long size = Files.size(path);
+        if (size > maxSize || size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Email attachment " + file + " exceeds the maximum size of " + maxSize + " bytes");
+        }
+        return new FileAttachment(path, (int) size);
+    }
+
+    /**
+     * Reference a file which has already been checked by {@link #of(Path, String, long)}, e.g. when reading back a
+     * spooled email.
+     */
+    public static FileAttachment restore(final Path path, final int size) {
+        return new FileAttachment(path, size);
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Open the file attachments of the given email.
+     *
+     * @param vertx the Vert.x instance used to read the files
+     * @param mailMessage the email
+     * @return the email itself if it has no file attachment, or a copy of the email whose file attachments are streamed
+     *     from the files, to be {@link #close(MailMessage) closed} once sent
+     */
+    public static Future<MailMessage> open(final Vertx vertx, final MailMessage mailMessage) {
+        final List<MailAttachment> attachments = mailMessage.getAttachment();
+        if (!hasFileAttachment(attachments)) {
+            return Future.succeededFuture(mailMessage);
+        }
+
+        final List<Future<MailAttachment>> opened = new ArrayList<>(attachments.size());
+        for (MailAttachment attachment : attachments) {
+            if (attachment instanceof FileAttachment) {
+                opened.add(((FileAttachment) attachment).open(vertx));
+            } else {
+                opened.add(Future.succeededFuture(attachment));
+            }
+        }
+        return CompositeFuture
+            .join(new ArrayList<>(opened))
+            .map(all -> new MailMessage(mailMessage).setAttachment(all.<MailAttachment>list()))
+            .onFailure(failure -> {
+                // Close the files which could be opened
+                for (Future<MailAttachment> future : opened) {
+                    if (future.succeeded()) {
+                        closeStream(future.result());
+                    }
+                }
+            });
+    }
+
+    /**
+     * Close the files of an email returned by {@link #open(Vertx, MailMessage)}.
+     */
+    public static void close(final MailMessage mailMessage) {
+        if (mailMessage.getAttachment() != null) {
+            mailMessage.getAttachment().forEach(FileAttachment::closeStream);
+        }
+    }
+
+    private Future<MailAttachment> open(final Vertx vertx) {
+        return vertx
+            .fileSystem()
+            .open(path.toString(), new OpenOptions().setRead(true).setWrite(false).setCreate(false))
+            .map(file -> {
+                final MailAttachment attachment = new MailAttachmentImpl();
+                attachment.setName(getName());
+                attachment.setContentType(getContentType());
+                attachment.setDisposition(getDisposition());
+                attachment.setDescription(getDescription());
+                attachment.setSize(getSize());
+                attachment.setStream(file);
+                return attachment;
+            });
+    }
+
+    private static void closeStream(final MailAttachment attachment) {
+        if (attachment.getStream() instanceof AsyncFile) {
+            ((AsyncFile) attachment.getStream()).close();
+        }
+    }
+
+    private static boolean hasFileAttachment(final List<MailAttachment> attachments) {
+        if (attachments != null) {
+            for (int i = 0; i < attachments.size(); i++) {
+                if (attachments.get(i) instanceof FileAttachment) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,221 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.notifier.email.resource;
+
+import io.netty.buffer.Unpooled;
+import io.vertx.core.buffer.Buffer;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import javax.activation.MimetypesFileTypeMap;
+
+/**
+ * In-memory cache of the images referenced by email templates, keyed by their resolved path.
+ *
+ * Entries hold the image bytes as a shared read-only {@link Buffer} and are reloaded when the file modification time
+ * changes, or only once invalidated when the directory holding the images is watched for changes. The total size of
+ * the cached images is bounded, least recently used images being evicted first.
+ *
+ * @author GraviteeSource Team
+ */
+public class ImageResourceCache {
+
+    private final Map<Path, ImageResource> resources = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    private volatile long maximumBytes;
+    private long currentBytes;
+
+    public ImageResourceCache(long maximumBytes) {
+        setMaximumBytes(maximumBytes);
+    }
+
+    /**
+     * Get the image located at the given path, reading it from the disk only if it is not cached or has been modified.
+     *
+     * @param path the image path
+     * @return the image content and content type
+     */
+    public ImageResource get(final Path path) throws IOException {
+        return get(path, true);
+    }
+
+    /**
+     * Get the image located at the given path.
+     *
+     * @param path the image path
+     * @param validate <code>true</code> to check the modification time of a cached image, <code>false</code> if the
+     *     image is {@link #invalidate(Path) invalidated} when the file changes
+     * @return the image content and content type
+     */
+    public ImageResource get(final Path path, final boolean validate) throws IOException {
+        final Path key = path.toAbsolutePath().normalize();
+
+        ImageResource resource;
+        synchronized (resources) {
+            resource = resources.get(key);
+        }
+
+        if (resource != null && !validate) {
+            hits.increment();
+            return resource;
+        }
+
+        final long lastModified = Files.getLastModifiedTime(key).toMillis();
+        if (resource != null && resource.lastModified == lastModified) {
+            hits.increment();
+            return resource;
+        }
+
+        misses.increment();
+        resource = new ImageResource(readOnly(Files.readAllBytes(key)), getContentTypeByFileName(key.toString()), lastModified);
+        put(key, resource);
+        return resource;
+    }
+
+    /**
+     * Evict the image located at the given path or, if it is a directory, all the images below it.
+     */
+    public void invalidate(final Path path) {
+        final Path prefix = path.toAbsolutePath().normalize();
+        synchronized (resources) {
+            final Iterator<Map.Entry<Path, ImageResource>> iterator = resources.entrySet().iterator();
+            while (iterator.hasNext()) {
+                final Map.Entry<Path, ImageResource> entry = iterator.next();
+                if (entry.getKey().startsWith(prefix)) {
+                    currentBytes -= entry.getValue().size();
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    public void clear() {
+        synchronized (resources) {
+            resources.clear();
+            currentBytes = 0;
+        }
+    }
+
+    public long getMaximumBytes() {
+        return maximumBytes;
+    }
+
+    public void setMaximumBytes(long maximumBytes) {
+        if (maximumBytes < 0) {
+            throw new IllegalArgumentException("Image cache maximum bytes must not be negative");
+        }
+        this.maximumBytes = maximumBytes;
+        synchronized (resources) {
+            evict();
+        }
+    }
+
+    public long size() {
+        synchronized (resources) {
+            return currentBytes;
+        }
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    private void put(final Path key, final ImageResource resource) {
+        synchronized (resources) {
+            final ImageResource previous = resources.remove(key);
+            if (previous != null) {
+                currentBytes -= previous.size();
+            }
+
+            // Images bigger than the whole budget are served but never cached
+            if (resource.size() <= maximumBytes) {
+                resources.put(key, resource);
+                currentBytes += resource.size();
+                evict();
+            }
+        }
+    }
+
+    private void evict() {
+        final Iterator<ImageResource> iterator = resources.values().iterator();
+        while (currentBytes > maximumBytes && iterator.hasNext()) {
+            currentBytes -= iterator.next().size();
+            iterator.remove();
+        }
+    }
+
+    private static Buffer readOnly(final byte[] bytes) {
+        return Buffer.buffer(Unpooled.wrappedBuffer(bytes).asReadOnly());
+    }
+
+    static String getContentTypeByFileName(final String fileName) {
+        if (fileName == null) {
+            return "";
+        } else if (fileName.endsWith(".png")) {
+            return "image/png";
+        }
+        return MimetypesFileTypeMap.getDefaultFileTypeMap().getContentType(fileName);
+    }
+
+    public static final class ImageResource {
+
+        private final Buffer data;
+        private final String contentType;
+        private final long lastModified;
+        private volatile String digest;
+
+        ImageResource(Buffer data, String contentType, long lastModified) {
+            this.data = data;
+            this.contentType = contentType;
+            this.lastModified = lastModified;
+        }
+
+        public Buffer getData() {
+            return data;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public int size() {
+            return data.length();
+        }
+
+        /**
+         * @return the content hash of the image, computed once
+         */
+        public String getDigest() {
+            String current = digest;
+            if (current == null) {
+                current = InlineAttachmentCache.digest(data);
+                digest = current;
+            }
+            return current;
+        }
+    }
+}
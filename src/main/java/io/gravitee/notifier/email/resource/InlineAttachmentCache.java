@@ -0,0 +1,183 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.notifier.email.resource;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.ext.mail.MailAttachment;
+import io.vertx.ext.mail.impl.MailAttachmentImpl;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Content-addressed inline attachments. Each distinct image (content type and content hash) gets a single
+ * {@link MailAttachment} prototype, with a read-only data buffer and a content id derived from the hash, shared by all
+ * the emails embedding the image. The prototypes must therefore never be modified.
+ *
+ * The total size of the cached images is bounded, least recently used images being evicted first.
+ *
+ * @author GraviteeSource Team
+ */
+public class InlineAttachmentCache {
+
+    private final Map<String, InlineAttachment> attachments = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    private volatile long maximumBytes;
+    private long currentBytes;
+
+    public InlineAttachmentCache(long maximumBytes) {
+        setMaximumBytes(maximumBytes);
+    }
+
+    /**
+     * Get the inline attachment for the given image.
+     *
+     * @param contentType the image content type
+     * @param data the image data
+     * @return the shared inline attachment
+     */
+    public InlineAttachment get(final String contentType, final Buffer data) {
+        return get(contentType, data, digest(data));
+    }
+
+    /**
+     * Get the inline attachment for the given image, whose content hash has already been computed.
+     *
+     * @param contentType the image content type
+     * @param data the image data
+     * @param digest the content hash of the data, as computed by {@link #digest(Buffer)}
+     * @return the shared inline attachment
+     */
+    public InlineAttachment get(final String contentType, final Buffer data, final String digest) {
+        final String key = contentType + ' ' + digest;
+        synchronized (attachments) {
+            final InlineAttachment attachment = attachments.get(key);
+            if (attachment != null) {
+                hits.increment();
+                return attachment;
+            }
+        }
+
+        misses.increment();
+        final InlineAttachment attachment = new InlineAttachment(contentType, data, digest);
+        synchronized (attachments) {
+            final InlineAttachment existing = attachments.putIfAbsent(key, attachment);
+            if (existing != null) {
+                return existing;
+            }
+            currentBytes += attachment.size();
+            evict();
+        }
+        return attachment;
+    }
+
+    public void clear() {
+        synchronized (attachments) {
+            attachments.clear();
+            currentBytes = 0;
+        }
+    }
+
+    public void setMaximumBytes(long maximumBytes) {
+        if (maximumBytes < 0) {
+            throw new IllegalArgumentException("Inline attachment cache maximum bytes must not be negative");
+        }
+        this.maximumBytes = maximumBytes;
+        synchronized (attachments) {
+            evict();
+        }
+    }
+
+    public long size() {
+        synchronized (attachments) {
+            return currentBytes;
+        }
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    private void evict() {
+        final Iterator<InlineAttachment> iterator = attachments.values().iterator();
+        while (currentBytes > maximumBytes && iterator.hasNext()) {
+            currentBytes -= iterator.next().size();
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Compute the content hash of the given data: the first 128 bits of its SHA-256, hex encoded.
+     */
+    public static String digest(final Buffer data) {
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(data.getByteBuf().nioBuffer());
+            final byte[] hashed = digest.digest();
+            final char[] hex = new char[32];
+            for (int i = 0; i < 16; i++) {
+                hex[i * 2] = Character.forDigit((hashed[i] >> 4) & 0xF, 16);
+                hex[i * 2 + 1] = Character.forDigit(hashed[i] & 0xF, 16);
+            }
+            return new String(hex);
+        } catch (NoSuchAlgorithmException nsae) {
+            throw new IllegalStateException(nsae);
+        }
+    }
+
+    public static final class InlineAttachment {
+
+        private final MailAttachment attachment;
+        private final String contentId;
+
+        private InlineAttachment(final String contentType, final Buffer data, final String digest) {
+            this.contentId = digest;
+            this.attachment = new MailAttachmentImpl();
+            attachment.setContentType(contentType);
+            attachment.setData(Buffer.buffer(data.getByteBuf().asReadOnly()));
+            attachment.setContentId('<' + digest + '>');
+            attachment.setDisposition("inline");
+        }
+
+        /**
+         * @return the shared attachment, which must not be modified
+         */
+        public MailAttachment getAttachment() {
+            return attachment;
+        }
+
+        /**
+         * @return the content id to reference the attachment from the HTML body, i.e. <code>cid:contentId</code>
+         */
+        public String getContentId() {
+            return contentId;
+        }
+
+        int size() {
+            return attachment.getData().length();
+        }
+    }
+}
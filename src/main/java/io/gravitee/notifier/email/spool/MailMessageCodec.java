@@ -0,0 +1,140 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.notifier.email.spool;
+
+import io.gravitee.notifier.email.resource.FileAttachment;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.mail.MailAttachment;
+import io.vertx.ext.mail.MailMessage;
+import io.vertx.ext.mail.impl.MailAttachmentImpl;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Serializes fully rendered mail messages, including their attachments, to JSON. File attachments are serialized as
+ * references to their file, which is read again when the email is replayed.
+ *
+ * @author GraviteeSource Team
+ */
+final class MailMessageCodec {
+
+    private MailMessageCodec() {}
+
+    static JsonObject encode(final MailMessage mailMessage) {
+        final JsonObject json = new JsonObject()
+            .put("from", mailMessage.getFrom())
+            .put("subject", mailMessage.getSubject())
+            .put("text", mailMessage.getText())
+            .put("html", mailMessage.getHtml());
+
+        putList(json, "to", mailMessage.getTo());
+        putList(json, "cc", mailMessage.getCc());
+        putList(json, "bcc", mailMessage.getBcc());
+        putAttachments(json, "attachments", mailMessage.getAttachment());
+        putAttachments(json, "inlineAttachments", mailMessage.getInlineAttachment());
+
+        return json;
+    }
+
+    static MailMessage decode(final JsonObject json) {
+        final MailMessage mailMessage = new MailMessage()
+            .setFrom(json.getString("from"))
+            .setSubject(json.getString("subject"))
+            .setText(json.getString("text"))
+            .setHtml(json.getString("html"));
+
+        mailMessage.setTo(getList(json, "to"));
+        mailMessage.setCc(getList(json, "cc"));
+        mailMessage.setBcc(getList(json, "bcc"));
+        mailMessage.setAttachment(getAttachments(json, "attachments"));
+        mailMessage.setInlineAttachment(getAttachments(json, "inlineAttachments"));
+
+        return mailMessage;
+    }
+
+    private static void putList(final JsonObject json, final String key, final List<String> values) {
+        if (values != null) {
+            json.put(key, new JsonArray(new ArrayList<>(values)));
+        }
+    }
+
+    private static List<String> getList(final JsonObject json, final String key) {
+        final JsonArray array = json.getJsonArray(key);
+        if (array == null) {
+            return null;
+        }
+        final List<String> values = new ArrayList<>(array.size());
+        for (int i = 0; i < array.size(); i++) {
+            values.add(array.getString(i));
+        }
+        return values;
+    }
+
+    private static void putAttachments(final JsonObject json, final String key, final List<MailAttachment> attachments) {
+        if (attachments == null) {
+            return;
+        }
+        final JsonArray array = new JsonArray();
+        for (MailAttachment attachment : attachments) {
+            if (attachment instanceof FileAttachment) {
+                final FileAttachment file = (FileAttachment) attachment;
+                array.add(new JsonObject().put("path", file.getPath().toString()).put("size", file.getSize()));
+                continue;
+            }
+            final JsonObject encoded = new JsonObject()
+                .put("name", attachment.getName())
+                .put("contentType", attachment.getContentType())
+                .put("contentId", attachment.getContentId())
+                .put("disposition", attachment.getDisposition())
+                .put("description", attachment.getDescription());
+            if (attachment.getData() != null) {
+                encoded.put("data", attachment.getData().getBytes());
+            }
+            array.add(encoded);
+        }
+        json.put(key, array);
+    }
+
+    private static List<MailAttachment> getAttachments(final JsonObject json, final String key) {
+        final JsonArray array = json.getJsonArray(key);
+        if (array == null) {
+            return null;
+        }
+        final List<MailAttachment> attachments = new ArrayList<>(array.size());
+        for (int i = 0; i < array.size(); i++) {
+            final JsonObject encoded = array.getJsonObject(i);
+            if (encoded.containsKey("path")) {
+                attachments.add(FileAttachment.restore(Paths.get(encoded.getString("path")), encoded.getInteger("size")));
+                continue;
+            }
+            final MailAttachment attachment = new MailAttachmentImpl();
+            attachment.setName(encoded.getString("name"));
+            attachment.setContentType(encoded.getString("contentType"));
+            attachment.setContentId(encoded.getString("contentId"));
+            attachment.setDisposition(encoded.getString("disposition"));
+            attachment.setDescription(encoded.getString("description"));
+            final byte[] data = encoded.getBinary("data");
+            if (data != null) {
+                attachment.setData(Buffer.buffer(data));
+            }
+            attachments.add(attachment);
+        }
+        return attachments;
+    }
+}
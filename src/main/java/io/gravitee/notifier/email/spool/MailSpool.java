@@ -0,0 +1,396 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.notifier.email.spool;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.mail.MailMessage;
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Append-only spool of the emails which could not be delivered, stored in memory-mapped segment files.
+ *
+ * Each segment starts with a header (magic number and version) followed by records made of a state byte, the payload
+ * length and the payload (the target SMTP settings identifier and the fully rendered message). Appending an email is a
+ * sequential write at the end of the active segment. Once replayed, a record is acknowledged by flipping its state byte,
+ * and a segment is deleted, and unmapped, when all its records have been acknowledged.
+ *
+ * Encoding and writing an email is blocking, {@link #append(String, MailMessage)} must not be called from an event loop.
+ *
+ * @author GraviteeSource Team
+ */
+public class MailSpool implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MailSpool.class);
+
+    private static final int MAGIC = 0x4d53504c;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final int RECORD_HEADER_SIZE = 5;
+
+    private static final byte END = 0;
+    private static final byte PENDING = 1;
+    private static final byte DONE = 2;
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".spool";
+
+    private final Path directory;
+    private final int segmentSize;
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+    private Segment active;
+    private boolean closed;
+
+    public MailSpool(final Path directory, final int segmentSize) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+
+        Files.createDirectories(directory);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                final Segment segment = Segment.open(file);
+                if (segment != null) {
+                    segments.put(segment.id, segment);
+                }
+            }
+        }
+
+        if (!segments.isEmpty()) {
+            active = segments.lastEntry().getValue();
+            LOGGER.info("Email spool opened with {} pending email(s)", size());
+        }
+    }
+
+    /**
+     * Append an email to the spool.
+     *
+     * @param target identifier of the SMTP settings to use to send the email
+     * @param mailMessage the fully rendered email
+     */
+    public synchronized void append(final String target, final MailMessage mailMessage) throws IOException {
+        if (closed) {
+            throw new IOException("Email spool is closed");
+        }
+
+        final byte[] payload = new JsonObject()
+            .put("target", target)
+            .put("message", MailMessageCodec.encode(mailMessage))
+            .toBuffer()
+            .getBytes();
+
+        if (active == null || active.remaining() < RECORD_HEADER_SIZE + payload.length) {
+            final long id = active == null ? 0 : active.id + 1;
+            final int size = Math.max(segmentSize, HEADER_SIZE + RECORD_HEADER_SIZE + payload.length + 1);
+            active = Segment.create(directory.resolve(SEGMENT_PREFIX + String.format("%016d", id) + SEGMENT_SUFFIX), id, size);
+            segments.put(id, active);
+        }
+
+        active.append(payload);
+    }
+
+    /**
+     * Read the pending emails, oldest first.
+     *
+     * @param max maximum number of emails to read
+     * @param target predicate selecting the SMTP settings identifiers whose emails can be replayed
+     * @return the pending emails
+     */
+    public synchronized List<SpooledMail> pending(final int max, final Predicate<String> target) {
+        final List<SpooledMail> mails = new ArrayList<>();
+        if (closed) {
+            return mails;
+        }
+
+        for (Segment segment : segments.values()) {
+            int position = segment.firstPending;
+            while (mails.size() < max && position < segment.writePosition) {
+                final int length = segment.buffer.getInt(position + 1);
+                if (segment.buffer.get(position) == PENDING) {
+                    final SpooledMail mail = segment.read(position, length);
+                    if (mail == null) {
+                        segment.buffer.put(position, DONE);
+                        segment.pending--;
+                    } else if (target.test(mail.getTarget())) {
+                        mails.add(mail);
+                    }
+                }
+                position += RECORD_HEADER_SIZE + length;
+            }
+            if (mails.size() >= max) {
+                break;
+            }
+        }
+        removeProcessedSegments();
+        return mails;
+    }
+
+    /**
+     * Mark an email as processed, it will not be replayed anymore.
+     */
+    public synchronized void acknowledge(final SpooledMail mail) {
+        // Closed segments are unmapped and no longer in the map
+        final Segment segment = segments.get(mail.segment);
+        if (segment != null) {
+            acknowledge(segment, mail.position);
+        }
+    }
+
+    private void acknowledge(final Segment segment, final int position) {
+        if (segment.buffer.get(position) != PENDING) {
+            return;
+        }
+        segment.buffer.put(position, DONE);
+        segment.pending--;
+        removeProcessedSegments();
+    }
+
+    private void removeProcessedSegments() {
+        final Iterator<Segment> iterator = segments.values().iterator();
+        while (iterator.hasNext()) {
+            final Segment segment = iterator.next();
+            segment.skipProcessed();
+            if (segment.pending == 0 && segment != active) {
+                iterator.remove();
+                segment.release();
+                try {
+                    Files.deleteIfExists(segment.file);
+                } catch (IOException ioe) {
+                    LOGGER.warn("Unable to delete email spool segment {}", segment.file, ioe);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the number of pending emails
+     */
+    public synchronized int size() {
+        int size = 0;
+        for (Segment segment : segments.values()) {
+            size += segment.pending;
+        }
+        return size;
+    }
+
+    /**
+     * Flush and unmap the segments. The spool can not be used anymore.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        for (Segment segment : segments.values()) {
+            segment.buffer.force();
+            segment.release();
+        }
+        segments.clear();
+        active = null;
+    }
+
+    public static final class SpooledMail {
+
+        private final long segment;
+        private final int position;
+        private final String target;
+        private final MailMessage mailMessage;
+
+        private SpooledMail(long segment, int position, String target, MailMessage mailMessage) {
+            this.segment = segment;
+            this.position = position;
+            this.target = target;
+            this.mailMessage = mailMessage;
+        }
+
+        public String getTarget() {
+            return target;
+        }
+
+        public MailMessage getMailMessage() {
+            return mailMessage;
+        }
+    }
+
+    private static final class Segment {
+
+        /**
+         * Unmaps a buffer right away instead of waiting for it to be garbage collected, <code>null</code> if not
+         * available on this Java runtime.
+         */
+        private static final Method INVOKE_CLEANER;
+        private static final Object UNSAFE;
+
+        static {
+            Method invokeCleaner = null;
+            Object unsafe = null;
+            try {
+                final Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+                final Field field = unsafeClass.getDeclaredField("theUnsafe");
+                field.setAccessible(true);
+                unsafe = field.get(null);
+                invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            } catch (ReflectiveOperationException | RuntimeException ex) {
+                LOGGER.debug("Email spool segments are unmapped once garbage collected", ex);
+            }
+            INVOKE_CLEANER = invokeCleaner;
+            UNSAFE = unsafe;
+        }
+
+        private final long id;
+        private final Path file;
+        private final MappedByteBuffer buffer;
+        private int writePosition = HEADER_SIZE;
+        private int firstPending = HEADER_SIZE;
+        private int pending;
+
+        private Segment(long id, Path file, MappedByteBuffer buffer) {
+            this.id = id;
+            this.file = file;
+            this.buffer = buffer;
+        }
+
+        private static Segment create(final Path file, final long id, final int size) throws IOException {
+            try (
+                FileChannel channel = FileChannel.open(
+                    file,
+                    StandardOpenOption.CREATE_NEW,
+                    StandardOpenOption.READ,
+                    StandardOpenOption.WRITE
+                )
+            ) {
+                final Segment segment = new Segment(id, file, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+                segment.buffer.putInt(0, MAGIC);
+                segment.buffer.putInt(4, VERSION);
+                return segment;
+            }
+        }
+
+        private static Segment open(final Path file) throws IOException {
+            final String name = file.getFileName().toString();
+            final long id;
+            try {
+                id = Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+            } catch (NumberFormatException nfe) {
+                return null;
+            }
+
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                if (channel.size() < HEADER_SIZE) {
+                    LOGGER.warn("Ignoring truncated email spool segment {}", file);
+                    return null;
+                }
+
+                final Segment segment = new Segment(id, file, channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size()));
+                if (segment.buffer.getInt(0) != MAGIC || segment.buffer.getInt(4) != VERSION) {
+                    LOGGER.warn("Ignoring invalid email spool segment {}", file);
+                    return null;
+                }
+                segment.recover();
+                return segment;
+            }
+        }
+
+        /**
+         * Find the end of the records written before the spool was closed. As the state byte of a record is written
+         * last, a partially written record is ignored.
+         */
+        private void recover() {
+            int position = HEADER_SIZE;
+            while (position + RECORD_HEADER_SIZE <= buffer.capacity()) {
+                final byte state = buffer.get(position);
+                if (state == END) {
+                    break;
+                }
+                final int length = buffer.getInt(position + 1);
+                if (length < 0 || position + RECORD_HEADER_SIZE + length > buffer.capacity()) {
+                    break;
+                }
+                if (state == PENDING) {
+                    pending++;
+                }
+                position += RECORD_HEADER_SIZE + length;
+            }
+            writePosition = position;
+            skipProcessed();
+        }
+
+        private void skipProcessed() {
+            while (firstPending < writePosition && buffer.get(firstPending) == DONE) {
+                firstPending += RECORD_HEADER_SIZE + buffer.getInt(firstPending + 1);
+            }
+        }
+
+        /**
+         * Unmap the segment, which must not be accessed anymore.
+         */
+        private void release() {
+            if (INVOKE_CLEANER != null) {
+                try {
+                    INVOKE_CLEANER.invoke(UNSAFE, buffer);
+                } catch (ReflectiveOperationException | RuntimeException ex) {
+                    LOGGER.debug("Unable to unmap email spool segment {}", file, ex);
+                }
+            }
+        }
+
+        private int remaining() {
+            // Keep room for the end marker
+            return buffer.capacity() - writePosition - 1;
+        }
+
+        private void append(final byte[] payload) {
+            buffer.putInt(writePosition + 1, payload.length);
+            final ByteBuffer slice = buffer.duplicate();
+            slice.position(writePosition + RECORD_HEADER_SIZE);
+            slice.put(payload);
+            buffer.put(writePosition, PENDING);
+            writePosition += RECORD_HEADER_SIZE + payload.length;
+            pending++;
+        }
+
+        private SpooledMail read(final int position, final int length) {
+            final byte[] payload = new byte[length];
+            final ByteBuffer slice = buffer.duplicate();
+            slice.position(position + RECORD_HEADER_SIZE);
+            slice.get(payload);
+            try {
+                final JsonObject json = Buffer.buffer(payload).toJsonObject();
+                return new SpooledMail(id, position, json.getString("target"), MailMessageCodec.decode(json.getJsonObject("message")));
+            } catch (RuntimeException ex) {
+                LOGGER.error("Dropping unreadable email from spool segment {}", file, ex);
+                return null;
+            }
+        }
+    }
+}
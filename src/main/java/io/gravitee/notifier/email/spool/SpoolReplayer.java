@@ -0,0 +1,129 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.notifier.email.spool;
+
+import io.gravitee.notifier.email.dispatch.SmtpFailures;
+import io.gravitee.notifier.email.spool.MailSpool.SpooledMail;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Periodically drains the {@link MailSpool}. Emails are replayed one after the other; when a replay fails with a
+ * transient error the pass is stopped and the delay before the next pass is doubled, up to a maximum, until the relay
+ * recovers.
+ *
+ * @author GraviteeSource Team
+ */
+public class SpoolReplayer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SpoolReplayer.class);
+
+    private static final int BATCH_SIZE = 100;
+
+    private final Vertx vertx;
+    private final MailSpool spool;
+    private final Predicate<String> targets;
+    private final Function<SpooledMail, Future<?>> sender;
+    private final long interval;
+    private final long maxInterval;
+    private long delay;
+
+    public SpoolReplayer(
+        final Vertx vertx,
+        final MailSpool spool,
+        final Predicate<String> targets,
+        final Function<SpooledMail, Future<?>> sender,
+        final long interval,
+        final long maxInterval
+    ) {
+        this.vertx = vertx;
+        this.spool = spool;
+        this.targets = targets;
+        this.sender = sender;
+        this.interval = Math.max(1, interval);
+        this.maxInterval = Math.max(this.interval, maxInterval);
+        this.delay = this.interval;
+    }
+
+    public void start() {
+        schedule();
+    }
+
+    private void schedule() {
+        vertx.setTimer(delay, timerId -> replay());
+    }
+
+    private void replay() {
+        vertx.<List<SpooledMail>>executeBlocking(
+            promise -> promise.complete(spool.pending(BATCH_SIZE, targets)),
+            false,
+            pending -> {
+                if (pending.failed()) {
+                    LOGGER.error("Unable to read the email spool", pending.cause());
+                    backOff();
+                } else if (!pending.result().isEmpty()) {
+                    LOGGER.info("Replaying {} spooled email(s)", pending.result().size());
+                    replayNext(pending.result().iterator());
+                } else {
+                    delay = interval;
+                    schedule();
+                }
+            }
+        );
+    }
+
+    private void replayNext(final Iterator<SpooledMail> mails) {
+        if (!mails.hasNext()) {
+            // Keep draining as long as the relay accepts the emails
+            delay = interval;
+            vertx.runOnContext(v -> replay());
+            return;
+        }
+
+        final SpooledMail mail = mails.next();
+        Future<?> sent;
+        try {
+            sent = sender.apply(mail);
+        } catch (RuntimeException ex) {
+            sent = Future.failedFuture(ex);
+        }
+
+        sent.onComplete(e -> {
+            if (e.succeeded()) {
+                spool.acknowledge(mail);
+                replayNext(mails);
+            } else if (!SmtpFailures.isTransient(e.cause())) {
+                LOGGER.error("Dropping spooled email to {} after a permanent failure", mail.getMailMessage().getTo(), e.cause());
+                spool.acknowledge(mail);
+                replayNext(mails);
+            } else {
+                LOGGER.warn("Unable to replay spooled emails, retrying in {} ms", Math.min(delay * 2, maxInterval), e.cause());
+                backOff();
+            }
+        });
+    }
+
+    private void backOff() {
+        delay = Math.min(delay * 2, maxInterval);
+        schedule();
+    }
+}
@@ -0,0 +1,146 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.notifier.email.template;
+
+import freemarker.template.Configuration;
+import freemarker.template.Template;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded LRU cache of compiled FreeMarker templates, keyed by the template source and the identity of the
+ * {@link Configuration} used to compile it.
+ *
+ * @author GraviteeSource Team
+ */
+public class TemplateCache {
+
+    static final String INLINE_TEMPLATE_NAME = "inline";
+
+    private final Map<Key, Template> templates = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Template> eldest) {
+            if (size() > maximumSize) {
+                evictions.increment();
+                return true;
+            }
+            return false;
+        }
+    };
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private volatile int maximumSize;
+
+    public TemplateCache(int maximumSize) {
+        setMaximumSize(maximumSize);
+    }
+
+    /**
+     * Get the compiled template for the given source, parsing it only if it is not already cached.
+     *
+     * @param source the template source
+     * @param configuration the FreeMarker configuration used to compile the template
+     * @return the compiled template
+     */
+    public Template get(final String source, final Configuration configuration) throws IOException {
+        final Key key = new Key(source, configuration);
+
+        Template template;
+        synchronized (templates) {
+            template = templates.get(key);
+        }
+
+        if (template != null) {
+            hits.increment();
+            return template;
+        }
+
+        misses.increment();
+        // Parsing is done outside of the lock, concurrent misses on the same source may compile it twice.
+        template = new Template(INLINE_TEMPLATE_NAME, source, configuration);
+
+        synchronized (templates) {
+            final Template previous = templates.putIfAbsent(key, template);
+            return previous != null ? previous : template;
+        }
+    }
+
+    public void clear() {
+        synchronized (templates) {
+            templates.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (templates) {
+            return templates.size();
+        }
+    }
+
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    public void setMaximumSize(int maximumSize) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("Template cache maximum size must be positive");
+        }
+        this.maximumSize = maximumSize;
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    public long evictions() {
+        return evictions.sum();
+    }
+
+    private static final class Key {
+
+        private final String source;
+        private final Configuration configuration;
+        private final int hash;
+
+        private Key(String source, Configuration configuration) {
+            this.source = source;
+            this.configuration = configuration;
+            this.hash = 31 * source.hashCode() + System.identityHashCode(configuration);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            final Key other = (Key) o;
+            return configuration == other.configuration && source.equals(other.source);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
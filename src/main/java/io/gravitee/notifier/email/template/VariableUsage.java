@@ -0,0 +1,126 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.notifier.email.template;
+
+import freemarker.core.MarkupOutputFormat;
+import freemarker.core.TemplateElement;
+import freemarker.template.Template;
+import java.util.regex.Pattern;
+
+/**
+ * Finds out how a template uses a variable of its data model, by walking the elements of the compiled template.
+ *
+ * The analysis is conservative: any use which could make the output depend on the value of the variable other than by
+ * outputting it verbatim (built-ins, conditions, assignments, auto-escaping, dynamic lookups of the data model,
+ * included or imported templates...) is reported as {@link Usage#OTHER}.
+ *
+ * @author GraviteeSource Team
+ */
+public final class VariableUsage {
+
+    public enum Usage {
+        /**
+         * The output does not depend on the variable.
+         */
+        NONE,
+        /**
+         * The variable is only output as-is, by plain <code>${variable}</code> interpolations.
+         */
+        INTERPOLATED,
+        /**
+         * The variable is used in any other way.
+         */
+        OTHER,
+    }
+
+    /**
+     * Directives and expressions through which a template may read a variable without naming it, or may transform its
+     * output.
+     */
+    private static final String[] INDIRECT_ACCESSES = {
+        "#include",
+        "#import",
+        "#visit",
+        "#recurse",
+        "#escape",
+        "#outputformat",
+        "#autoesc",
+        ".vars",
+        ".data_model",
+        ".globals",
+        "?eval",
+        "?interpret",
+    };
+
+    private VariableUsage() {}
+
+    /**
+     * @param template the compiled template
+     * @param variable the name of the variable
+     * @return how the template uses the variable
+     */
+    @SuppressWarnings("deprecation")
+    public static Usage of(final Template template, final String variable) {
+        final Pattern name = Pattern.compile("(?<![\\w$@])" + Pattern.quote(variable) + "(?![\\w$@])");
+        final Usage usage = of(template.getRootTreeNode(), name, "${" + variable + "}", "[=" + variable + "]");
+        if (usage == Usage.INTERPOLATED && template.getAutoEscaping() && template.getOutputFormat() instanceof MarkupOutputFormat) {
+            // The interpolations escape the value
+            return Usage.OTHER;
+        }
+        return usage;
+    }
+
+    @SuppressWarnings("deprecation")
+    private static Usage of(final TemplateElement element, final Pattern name, final String... interpolations) {
+        Usage usage = Usage.NONE;
+        // Static text is output as-is, whatever it contains
+        if (!"TextBlock".equals(element.getNodeName())) {
+            // One-line description of the element, with its parameters but without its nested elements
+            final String description = element.getDescription();
+            for (String access : INDIRECT_ACCESSES) {
+                if (description.contains(access)) {
+                    return Usage.OTHER;
+                }
+            }
+            if (name.matcher(description).find()) {
+                if (!"DollarVariable".equals(element.getNodeName()) || !isInterpolation(description, interpolations)) {
+                    return Usage.OTHER;
+                }
+                usage = Usage.INTERPOLATED;
+            }
+        }
+
+        for (int i = 0; i < element.getChildCount(); i++) {
+            final Usage child = of((TemplateElement) element.getChildAt(i), name, interpolations);
+            if (child == Usage.OTHER) {
+                return Usage.OTHER;
+            }
+            if (child == Usage.INTERPOLATED) {
+                usage = Usage.INTERPOLATED;
+            }
+        }
+        return usage;
+    }
+
+    private static boolean isInterpolation(final String description, final String... interpolations) {
+        for (String interpolation : interpolations) {
+            if (description.equals(interpolation)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
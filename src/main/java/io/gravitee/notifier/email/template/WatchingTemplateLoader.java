@@ -0,0 +1,239 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.notifier.email.template;
+
+import freemarker.cache.TemplateLoader;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * FreeMarker template loader keeping the templates of a directory in memory. A template is read from the disk the first
+ * time it is requested, and then only after a {@link WatchService} has reported a change of the file: looking a
+ * template up never touches the file system.
+ *
+ * Changes are applied once no other change has been reported for <code>debounce</code> milliseconds, so that a file
+ * written in several steps is reloaded once, in its final state. The changed paths are also passed to a listener, to
+ * invalidate other resources read from the same directory.
+ *
+ * @author GraviteeSource Team
+ */
+public class WatchingTemplateLoader implements TemplateLoader, Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(WatchingTemplateLoader.class);
+
+    private static final TemplateSource MISSING = new TemplateSource(null, 0);
+
+    private final Path root;
+    private final long debounce;
+    private final Consumer<Path> listener;
+    private final WatchService watchService;
+    private final Map<WatchKey, Path> directories = new ConcurrentHashMap<>();
+    private final Map<String, TemplateSource> sources = new ConcurrentHashMap<>();
+    private final AtomicLong versions = new AtomicLong();
+    private final Thread watcher;
+
+    public WatchingTemplateLoader(final Path root, final long debounce, final Consumer<Path> listener) throws IOException {
+        this.root = root.toAbsolutePath().normalize();
+        this.debounce = Math.max(0, debounce);
+        this.listener = listener;
+
+        if (!Files.isDirectory(this.root)) {
+            throw new IOException("Templates directory " + this.root + " does not exist");
+        }
+
+        this.watchService = FileSystems.getDefault().newWatchService();
+        try {
+            registerAll(this.root);
+        } catch (IOException ioe) {
+            watchService.close();
+            throw ioe;
+        }
+
+        this.watcher = new Thread(this::watch, "gravitee-notifier-email-templates-watcher");
+        this.watcher.setDaemon(true);
+        this.watcher.start();
+    }
+
+    /**
+     * @return <code>true</code> if changes of the given file are reported by this loader
+     */
+    public boolean watches(final Path path) {
+        return path.toAbsolutePath().normalize().startsWith(root);
+    }
+
+    @Override
+    public Object findTemplateSource(final String name) throws IOException {
+        final TemplateSource source = sources.computeIfAbsent(name, this::load);
+        return source == MISSING ? null : source;
+    }
+
+    @Override
+    public long getLastModified(final Object templateSource) {
+        return ((TemplateSource) templateSource).version;
+    }
+
+    @Override
+    public Reader getReader(final Object templateSource, final String encoding) throws IOException {
+        return new InputStreamReader(new ByteArrayInputStream(((TemplateSource) templateSource).content), encoding);
+    }
+
+    @Override
+    public void closeTemplateSource(final Object templateSource) {}
+
+    @Override
+    public void close() throws IOException {
+        watcher.interrupt();
+        watchService.close();
+    }
+
+    private TemplateSource load(final String name) {
+        final Path path = root.resolve(name).normalize();
+        if (!path.startsWith(root)) {
+            return MISSING;
+        }
+        try {
+            // Do not follow links out of the templates directory
+            if (!path.toRealPath().startsWith(root.toRealPath()) || !Files.isRegularFile(path)) {
+                return MISSING;
+            }
+            return new TemplateSource(Files.readAllBytes(path), versions.incrementAndGet());
+        } catch (NoSuchFileException nsfe) {
+            return MISSING;
+        } catch (IOException ioe) {
+            LOGGER.warn("Unable to read template {}", path, ioe);
+            // Not cached, the next lookup tries again
+            return null;
+        }
+    }
+
+    private void watch() {
+        final Set<Path> changed = new LinkedHashSet<>();
+        long deadline = 0;
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                final WatchKey key;
+                if (changed.isEmpty()) {
+                    key = watchService.take();
+                } else {
+                    final long remaining = deadline - System.nanoTime();
+                    key = remaining > 0 ? watchService.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                }
+
+                if (key == null) {
+                    apply(changed);
+                    changed.clear();
+                    continue;
+                }
+
+                collect(key, changed);
+                deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(debounce);
+            }
+        } catch (InterruptedException | ClosedWatchServiceException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void collect(final WatchKey key, final Set<Path> changed) {
+        final Path directory = directories.get(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW || directory == null) {
+                // Some events have been lost, everything may have changed
+                changed.add(root);
+                continue;
+            }
+
+            final Path path = directory.resolve((Path) event.context());
+            changed.add(path);
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(path)) {
+                try {
+                    registerAll(path);
+                } catch (IOException ioe) {
+                    LOGGER.warn("Unable to watch templates directory {}", path, ioe);
+                }
+            }
+        }
+        if (!key.reset()) {
+            directories.remove(key);
+        }
+    }
+
+    private void apply(final Set<Path> changed) {
+        for (Path path : changed) {
+            LOGGER.debug("Templates resource {} has changed", path);
+            final String name = root.relativize(path).toString().replace(path.getFileSystem().getSeparator(), "/");
+            if (name.isEmpty()) {
+                sources.clear();
+            } else {
+                // The path may be a directory, evict all the templates below it
+                sources.keySet().removeIf(template -> template.equals(name) || template.startsWith(name + '/'));
+            }
+            try {
+                listener.accept(path);
+            } catch (RuntimeException ex) {
+                LOGGER.warn("Unable to apply the change of {}", path, ex);
+            }
+        }
+    }
+
+    private void registerAll(final Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>) paths.filter(Files::isDirectory)::iterator) {
+                directories.put(
+                    path.register(
+                        watchService,
+                        StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_DELETE,
+                        StandardWatchEventKinds.ENTRY_MODIFY
+                    ),
+                    path
+                );
+            }
+        }
+    }
+
+    private static final class TemplateSource {
+
+        private final byte[] content;
+        private final long version;
+
+        private TemplateSource(byte[] content, long version) {
+            this.content = content;
+            this.version = version;
+        }
+    }
+}
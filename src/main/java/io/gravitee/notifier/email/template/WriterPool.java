@@ -0,0 +1,228 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.notifier.email.template;
+
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded pool of growable character buffers, which templates are rendered into. A {@link PooledWriter} being a
+ * {@link CharSequence}, the rendered body is read in place instead of being copied into a <code>String</code> first, and
+ * the buffer is reused by the next render, so a large body does not leave a trail of grown-and-discarded arrays behind.
+ *
+ * A shared pool is used rather than thread-local buffers, which would be held by every worker thread and would not be
+ * reused at all by virtual threads. Buffers grown above the maximum capacity are dropped instead of being pooled.
+ *
+ * @author GraviteeSource Team
+ */
+public class WriterPool {
+
+    private static final int INITIAL_CAPACITY = 4096;
+
+    private final Queue<PooledWriter> writers = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pooled = new AtomicInteger();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    private volatile int maximumSize;
+    private volatile int maximumCapacity;
+
+    /**
+     * @param maximumSize maximum number of pooled writers
+     * @param maximumCapacity maximum capacity (in characters) of a pooled writer
+     */
+    public WriterPool(final int maximumSize, final int maximumCapacity) {
+        configure(maximumSize, maximumCapacity);
+    }
+
+    public void configure(final int maximumSize, final int maximumCapacity) {
+        if (maximumSize < 0 || maximumCapacity < 0) {
+            throw new IllegalArgumentException("Writer pool maximum size and capacity must not be negative");
+        }
+        this.maximumSize = maximumSize;
+        this.maximumCapacity = maximumCapacity;
+        while (pooled.get() > maximumSize && writers.poll() != null) {
+            pooled.decrementAndGet();
+        }
+    }
+
+    /**
+     * Get an empty writer, to be closed once its content is not needed anymore so that it returns to the pool.
+     *
+     * @return an empty writer
+     */
+    public PooledWriter acquire() {
+        final PooledWriter writer = writers.poll();
+        if (writer != null) {
+            pooled.decrementAndGet();
+            hits.increment();
+            writer.released = false;
+            return writer;
+        }
+        misses.increment();
+        return new PooledWriter(this, INITIAL_CAPACITY);
+    }
+
+    private void release(final PooledWriter writer) {
+        writer.length = 0;
+        if (writer.chars.length > maximumCapacity) {
+            return;
+        }
+        if (pooled.incrementAndGet() > maximumSize) {
+            pooled.decrementAndGet();
+            return;
+        }
+        writers.offer(writer);
+    }
+
+    public int size() {
+        return pooled.get();
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    /**
+     * A {@link Writer} into a growable character array, whose content is readable as a {@link CharSequence}. Not thread
+     * safe. Closing the writer returns it to its pool: it must not be used anymore, nor its content.
+     */
+    public static final class PooledWriter extends Writer implements CharSequence {
+
+        private final WriterPool pool;
+        private char[] chars;
+        private int length;
+        private boolean released;
+
+        private PooledWriter(final WriterPool pool, final int capacity) {
+            this.pool = pool;
+            this.chars = new char[capacity];
+        }
+
+        @Override
+        public void write(final int c) {
+            ensureCapacity(length + 1);
+            chars[length++] = (char) c;
+        }
+
+        @Override
+        public void write(final char[] cbuf, final int off, final int len) {
+            ensureCapacity(length + len);
+            System.arraycopy(cbuf, off, chars, length, len);
+            length += len;
+        }
+
+        @Override
+        public void write(final String str) {
+            write(str, 0, str.length());
+        }
+
+        @Override
+        public void write(final String str, final int off, final int len) {
+            ensureCapacity(length + len);
+            str.getChars(off, off + len, chars, length);
+            length += len;
+        }
+
+        @Override
+        public PooledWriter append(final CharSequence csq) {
+            final CharSequence value = csq == null ? "null" : csq;
+            return append(value, 0, value.length());
+        }
+
+        @Override
+        public PooledWriter append(final CharSequence csq, final int start, final int end) {
+            if (csq == null) {
+                return append("null", start, end);
+            }
+            if (csq instanceof String) {
+                write((String) csq, start, end - start);
+            } else if (csq instanceof PooledWriter) {
+                write(((PooledWriter) csq).chars, start, end - start);
+            } else {
+                ensureCapacity(length + end - start);
+                for (int i = start; i < end; i++) {
+                    chars[length++] = csq.charAt(i);
+                }
+            }
+            return this;
+        }
+
+        @Override
+        public PooledWriter append(final char c) {
+            write(c);
+            return this;
+        }
+
+        private void ensureCapacity(final int capacity) {
+            if (capacity > chars.length) {
+                chars = Arrays.copyOf(chars, Math.max(capacity, chars.length << 1));
+            }
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(final int index) {
+            if (index >= length) {
+                throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + length);
+            }
+            return chars[index];
+        }
+
+        @Override
+        public CharSequence subSequence(final int start, final int end) {
+            if (start < 0 || end > length || start > end) {
+                throw new IndexOutOfBoundsException("Range [" + start + ", " + end + ") out of bounds for length " + length);
+            }
+            return new String(chars, start, end - start);
+        }
+
+        /**
+         * @return the content written so far
+         */
+        @Override
+        public String toString() {
+            return new String(chars, 0, length);
+        }
+
+        @Override
+        public void flush() {}
+
+        /**
+         * Return this writer to its pool.
+         */
+        @Override
+        public void close() {
+            if (!released) {
+                released = true;
+                pool.release(this);
+            }
+        }
+    }
+}
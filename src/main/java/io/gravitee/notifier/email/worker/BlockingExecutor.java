@@ -0,0 +1,176 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.notifier.email.worker;
+
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.WorkerExecutor;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs blocking code (template rendering, file reads, image decoding) away from the event loop. The result is delivered
+ * back on the calling Vert.x context.
+ *
+ * Two kinds of executors are supported:
+ * <ul>
+ *     <li>{@link Type#WORKER}: a Vert.x shared worker pool of <code>poolSize</code> threads</li>
+ *     <li>{@link Type#VIRTUAL}: one virtual thread per task, at most <code>poolSize</code> running at the same time.
+ *     Requires Java 21, the worker pool is used on older runtimes.</li>
+ * </ul>
+ *
+ * @author GraviteeSource Team
+ */
+public class BlockingExecutor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BlockingExecutor.class);
+
+    public enum Type {
+        WORKER,
+        VIRTUAL,
+    }
+
+    private final String name;
+    private final Map<Vertx, WorkerExecutor> workerExecutors = new ConcurrentHashMap<>();
+
+    private volatile int poolSize;
+    private volatile Type type;
+    private volatile ExecutorService virtualExecutor;
+    private volatile Semaphore virtualPermits;
+
+    public BlockingExecutor(final String name, final int poolSize, final Type type) {
+        this.name = name;
+        configure(poolSize, type);
+    }
+
+    public synchronized void configure(final int poolSize, final Type type) {
+        if (poolSize <= 0) {
+            throw new IllegalArgumentException("Blocking executor pool size must be positive");
+        }
+        if (poolSize == this.poolSize && type == this.type) {
+            return;
+        }
+
+        this.poolSize = poolSize;
+        this.type = type;
+
+        // Executors created with the previous settings keep running their tasks but do not accept new ones
+        close();
+
+        if (type == Type.VIRTUAL) {
+            virtualExecutor = newVirtualThreadPerTaskExecutor();
+            virtualPermits = new Semaphore(poolSize);
+        }
+    }
+
+    /**
+     * Close the executors, e.g. on shutdown. The tasks already submitted are still run.
+     */
+    public synchronized void close() {
+        workerExecutors.values().forEach(WorkerExecutor::close);
+        workerExecutors.clear();
+        if (virtualExecutor != null) {
+            virtualExecutor.shutdown();
+            virtualExecutor = null;
+        }
+    }
+
+    /**
+     * Run the given blocking task. Must be called from a Vert.x context.
+     *
+     * @param vertx the Vert.x instance of the calling context
+     * @param task the task to run
+     * @return the result of the task, completed on the calling context
+     */
+    public <T> Future<T> execute(final Vertx vertx, final Callable<T> task) {
+        final ExecutorService executor = virtualExecutor;
+        if (executor != null) {
+            return executeOnVirtualThread(vertx.getOrCreateContext(), executor, virtualPermits, task);
+        }
+
+        return workerExecutors
+            .computeIfAbsent(vertx, v -> v.createSharedWorkerExecutor(name, poolSize))
+            .executeBlocking(
+                promise -> {
+                    try {
+                        promise.complete(task.call());
+                    } catch (Exception ex) {
+                        promise.fail(ex);
+                    }
+                },
+                false
+            );
+    }
+
+    private static <T> Future<T> executeOnVirtualThread(
+        final Context context,
+        final ExecutorService executor,
+        final Semaphore permits,
+        final Callable<T> task
+    ) {
+        final Promise<T> promise = Promise.promise();
+        try {
+            executor.execute(() -> {
+                T result = null;
+                Throwable failure = null;
+                try {
+                    permits.acquire();
+                    try {
+                        result = task.call();
+                    } finally {
+                        permits.release();
+                    }
+                } catch (Throwable t) {
+                    failure = t;
+                }
+                final T value = result;
+                final Throwable cause = failure;
+                context.runOnContext(v -> {
+                    if (cause == null) {
+                        promise.complete(value);
+                    } else {
+                        promise.fail(cause);
+                    }
+                });
+            });
+        } catch (RejectedExecutionException ree) {
+            promise.fail(ree);
+        }
+        return promise.future();
+    }
+
+    /**
+     * Virtual threads are only available from Java 21, while this plugin targets Java 11: the executor is looked up by
+     * reflection.
+     */
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            LOGGER.warn("Virtual threads are not available on this Java runtime, falling back to a worker pool");
+            return null;
+        }
+    }
+}
@@ -106,15 +106,7 @@ public class EmailNotifierAuthenticationTest {
                                     MimeMessage receivedMessage = greenMail.getReceivedMessages()[0];
 
                                     try {
-                                        assertEquals(
-                                            "<html>\r\n" +
-                                            " <head></head>\r\n" +
-                                            " <body>\r\n" +
-                                            "  template_sample.html\r\n" +
-                                            " </body>\r\n" +
-                                            "</html>",
-                                            GreenMailUtil.getBody(receivedMessage)
-                                        );
+                                        assertEquals("template_sample.html", GreenMailUtil.getBody(receivedMessage));
                                         assertEquals(1, receivedMessage.getAllRecipients().length);
                                         assertEquals("to@mail.com", receivedMessage.getAllRecipients()[0].toString());
                                         //TODO: check why the sender is always null
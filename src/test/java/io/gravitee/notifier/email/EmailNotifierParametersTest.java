@@ -23,6 +23,7 @@ import io.gravitee.notifier.email.configuration.EmailNotifierConfiguration;
 import io.vertx.ext.mail.MailMessage;
 import java.io.IOException;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import org.junit.jupiter.api.*;
@@ -72,6 +73,55 @@ public class EmailNotifierParametersTest {
         Assertions.assertEquals(2, mailMessage.getTo().size());
     }
 
+    @Test
+    public void shouldPrepareOneEmailPerRecipient() throws Exception {
+        when(emailNotifierConfiguration.getFrom()).thenReturn("from@mail.com");
+        when(emailNotifierConfiguration.getTo()).thenReturn("john.doe@gmail.com, jane.doe@gmail.com");
+        when(emailNotifierConfiguration.getSubject()).thenReturn("Hello ${recipient}");
+        when(emailNotifierConfiguration.getBody()).thenReturn("<p>Sent to ${recipient} about ${api}</p>");
+
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("api", "Echo");
+
+        List<MailMessage> mailMessages = emailNotifier.preparePersonalizedMailMessages(parameters);
+
+        Assertions.assertEquals(2, mailMessages.size());
+        Assertions.assertEquals(List.of("john.doe@gmail.com"), mailMessages.get(0).getTo());
+        Assertions.assertEquals("Hello john.doe@gmail.com", mailMessages.get(0).getSubject());
+        Assertions.assertEquals("<p>Sent to john.doe@gmail.com about Echo</p>", mailMessages.get(0).getHtml());
+        Assertions.assertEquals(List.of("jane.doe@gmail.com"), mailMessages.get(1).getTo());
+        Assertions.assertEquals("Hello jane.doe@gmail.com", mailMessages.get(1).getSubject());
+        Assertions.assertEquals("<p>Sent to jane.doe@gmail.com about Echo</p>", mailMessages.get(1).getHtml());
+    }
+
+    @Test
+    public void shouldRenderEachEmailWhenRecipientIsTransformed() throws Exception {
+        when(emailNotifierConfiguration.getFrom()).thenReturn("from@mail.com");
+        when(emailNotifierConfiguration.getTo()).thenReturn("john.doe@gmail.com;jane.doe@gmail.com");
+        when(emailNotifierConfiguration.getSubject()).thenReturn("Hello ${recipient?upper_case}");
+        when(emailNotifierConfiguration.getBody()).thenReturn("<p>body</p>");
+
+        List<MailMessage> mailMessages = emailNotifier.preparePersonalizedMailMessages(new HashMap<>());
+
+        Assertions.assertEquals(2, mailMessages.size());
+        Assertions.assertEquals("Hello JOHN.DOE@GMAIL.COM", mailMessages.get(0).getSubject());
+        Assertions.assertEquals("Hello JANE.DOE@GMAIL.COM", mailMessages.get(1).getSubject());
+    }
+
+    @Test
+    public void shouldRenderEachEmailWhenRecipientIsTested() throws Exception {
+        when(emailNotifierConfiguration.getFrom()).thenReturn("from@mail.com");
+        when(emailNotifierConfiguration.getTo()).thenReturn("john.doe@acme.com;jane.doe@gmail.com");
+        when(emailNotifierConfiguration.getSubject()).thenReturn("subject of email");
+        when(emailNotifierConfiguration.getBody())
+            .thenReturn("<p>${recipient} <#if recipient?ends_with(\"@acme.com\")>colleague<#else>customer</#if></p>");
+
+        List<MailMessage> mailMessages = emailNotifier.preparePersonalizedMailMessages(new HashMap<>());
+
+        Assertions.assertEquals("<p>john.doe@acme.com colleague</p>", mailMessages.get(0).getHtml());
+        Assertions.assertEquals("<p>jane.doe@gmail.com customer</p>", mailMessages.get(1).getHtml());
+    }
+
     public class Entity {
 
         private final Map<String, Object> metadata = new HashMap<>();
@@ -28,6 +28,7 @@ import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
 import java.io.IOException;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
@@ -103,15 +104,7 @@ public class EmailNotifierTest {
                                     MimeMessage receivedMessage = greenMail.getReceivedMessages()[0];
 
                                     try {
-                                        assertEquals(
-                                            "<html>\r\n" +
-                                            " <head></head>\r\n" +
-                                            " <body>\r\n" +
-                                            "  template_sample.html\r\n" +
-                                            " </body>\r\n" +
-                                            "</html>",
-                                            GreenMailUtil.getBody(receivedMessage)
-                                        );
+                                        assertEquals("template_sample.html", GreenMailUtil.getBody(receivedMessage));
                                         assertEquals(1, receivedMessage.getAllRecipients().length);
                                         assertEquals("to@mail.com", receivedMessage.getAllRecipients()[0].toString());
                                         //TODO: check why the sender is always null
@@ -162,15 +155,7 @@ public class EmailNotifierTest {
                                     MimeMessage receivedMessage = greenMail.getReceivedMessages()[1];
 
                                     try {
-                                        assertEquals(
-                                            "<html>\r\n" +
-                                            " <head></head>\r\n" +
-                                            " <body>\r\n" +
-                                            "  template_sample.html\r\n" +
-                                            " </body>\r\n" +
-                                            "</html>",
-                                            GreenMailUtil.getBody(receivedMessage)
-                                        );
+                                        assertEquals("template_sample.html", GreenMailUtil.getBody(receivedMessage));
                                         assertEquals(2, receivedMessage.getAllRecipients().length);
                                         assertEquals("to@mail.com", receivedMessage.getAllRecipients()[0].toString());
                                         assertEquals("to2@mail.com", receivedMessage.getAllRecipients()[1].toString());
@@ -190,4 +175,48 @@ public class EmailNotifierTest {
 
         Assertions.assertTrue(latch.await(10, TimeUnit.SECONDS));
     }
+
+    @Test
+    public void shouldSendBatchOfEmails() throws Exception {
+        when(emailNotifierConfiguration.getFrom()).thenReturn("from@mail.com");
+        when(emailNotifierConfiguration.getTo()).thenReturn("${recipient}");
+        when(emailNotifierConfiguration.getSubject()).thenReturn("subject of email");
+        when(emailNotifierConfiguration.getBody()).thenReturn("template_sample.html");
+        when(emailNotifierConfiguration.getHost()).thenReturn(ServerSetupTest.SMTP.getBindAddress());
+        when(emailNotifierConfiguration.getPort()).thenReturn(ServerSetupTest.SMTP.getPort());
+
+        Map<String, Object> first = new HashMap<>();
+        first.put("recipient", "to@mail.com");
+        Map<String, Object> second = new HashMap<>();
+        second.put("recipient", "to2@mail.com");
+
+        CountDownLatch latch = new CountDownLatch(1);
+
+        Vertx
+            .vertx()
+            .runOnContext(event ->
+                emailNotifier
+                    .sendAll(List.of(notification, notification), List.of(first, second))
+                    .whenComplete((results, throwable) -> {
+                        try {
+                            assertNull(throwable);
+                            assertEquals(2, results.size());
+                            assertTrue(results.get(0).succeeded());
+                            assertTrue(results.get(1).succeeded());
+                            assertNotNull(results.get(0).getMessageId());
+                            assertEquals(1, results.get(0).getAttempts());
+
+                            MimeMessage[] receivedMessages = greenMail.getReceivedMessages();
+                            assertEquals(2, receivedMessages.length);
+                            assertEquals("to@mail.com", receivedMessages[0].getAllRecipients()[0].toString());
+                            assertEquals("to2@mail.com", receivedMessages[1].getAllRecipients()[0].toString());
+                            latch.countDown();
+                        } catch (Throwable t) {
+                            fail(t);
+                        }
+                    })
+            );
+
+        Assertions.assertTrue(latch.await(10, TimeUnit.SECONDS));
+    }
 }
@@ -0,0 +1,170 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.notifier.email.client;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.gravitee.notifier.email.client.MailClientRegistry.PooledMailClient;
+import io.gravitee.notifier.email.configuration.EmailNotifierConfiguration;
+import io.gravitee.notifier.email.dispatch.CircuitBreaker;
+import io.vertx.core.Vertx;
+import io.vertx.ext.mail.LoginOption;
+import io.vertx.ext.mail.MailConfig;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author GraviteeSource Team
+ */
+public class MailClientRegistryTest {
+
+    private Vertx vertx;
+
+    private MailClientRegistry registry;
+
+    @BeforeEach
+    public void init() {
+        vertx = Vertx.vertx();
+        registry = new MailClientRegistry();
+    }
+
+    @AfterEach
+    public void close() {
+        registry.closeAll();
+        vertx.close();
+    }
+
+    @Test
+    public void shouldMemoizeMailConfiguration() {
+        MailConfig first = registry.getMailConfig(SmtpSettings.of(configuration("smtp.acme.com", 25, "user")));
+        MailConfig second = registry.getMailConfig(SmtpSettings.of(configuration("smtp.acme.com", 25, "user")));
+
+        assertSame(first, second);
+        assertEquals("smtp.acme.com", first.getHostname());
+        assertEquals("user", first.getUsername());
+    }
+
+    @Test
+    public void shouldRebuildMailConfigurationWhenSettingsChange() {
+        EmailNotifierConfiguration configuration = configuration("smtp.acme.com", 25, "user");
+        MailConfig first = registry.getMailConfig(SmtpSettings.of(configuration));
+
+        configuration.setPassword(null);
+        MailConfig second = registry.getMailConfig(SmtpSettings.of(configuration));
+
+        assertNotSame(first, second);
+        assertEquals(LoginOption.DISABLED, second.getLogin());
+    }
+
+    @Test
+    public void shouldApplyTimeouts() {
+        EmailNotifierConfiguration configuration = configuration("smtp.acme.com", 25, "user");
+        configuration.setConnectTimeout(5000);
+        configuration.setIdleTimeout(30000);
+        configuration.setKeepAliveTimeout(10);
+
+        MailConfig mailConfig = registry.getMailConfig(SmtpSettings.of(configuration));
+
+        assertEquals(5000, mailConfig.getConnectTimeout());
+        assertEquals(30000, mailConfig.getIdleTimeout());
+        assertEquals(TimeUnit.MILLISECONDS, mailConfig.getIdleTimeoutUnit());
+        assertEquals(10, mailConfig.getKeepAliveTimeout());
+        assertEquals(TimeUnit.SECONDS, mailConfig.getKeepAliveTimeoutUnit());
+    }
+
+    @Test
+    public void shouldApplyPipelining() {
+        EmailNotifierConfiguration configuration = configuration("smtp.acme.com", 25, "user");
+        assertTrue(registry.getMailConfig(SmtpSettings.of(configuration)).isPipelining());
+
+        configuration.setPipelining(false);
+        assertFalse(registry.getMailConfig(SmtpSettings.of(configuration)).isPipelining());
+    }
+
+    @Test
+    public void shouldShareClientForSameSettings() {
+        PooledMailClient first = registry.acquire(vertx, SmtpSettings.of(configuration("smtp.acme.com", 25, "user")), 0);
+        PooledMailClient second = registry.acquire(vertx, SmtpSettings.of(configuration("smtp.acme.com", 25, "user")), 0);
+
+        assertSame(first, second);
+        assertEquals(1, registry.size());
+    }
+
+    @Test
+    public void shouldNotShareClientBetweenPortsOrCredentials() {
+        PooledMailClient first = registry.acquire(vertx, SmtpSettings.of(configuration("smtp.acme.com", 25, "user")), 0);
+        PooledMailClient otherPort = registry.acquire(vertx, SmtpSettings.of(configuration("smtp.acme.com", 587, "user")), 0);
+        PooledMailClient otherUser = registry.acquire(vertx, SmtpSettings.of(configuration("smtp.acme.com", 25, "admin")), 0);
+
+        assertNotSame(first, otherPort);
+        assertNotSame(first, otherUser);
+        assertEquals(3, registry.size());
+    }
+
+    @Test
+    public void shouldShareSettingsOfEqualConfigurations() {
+        SmtpSettings first = registry.getSettings(configuration("smtp.acme.com", 25, "user"));
+        SmtpSettings second = registry.getSettings(configuration("smtp.acme.com", 25, "user"));
+
+        assertSame(first, second);
+        assertNotSame(first, registry.getSettings(configuration("smtp.acme.com", 25, "admin")));
+    }
+
+    @Test
+    public void shouldCloseIdleClientsOnceSendsStop() throws Exception {
+        registry = new MailClientRegistry(20);
+        SmtpSettings settings = registry.getSettings(configuration("smtp.acme.com", 25, "user"));
+        registry.acquire(vertx, settings, 1).release();
+
+        long timeout = System.currentTimeMillis() + 5000;
+        while (registry.size() > 0 && System.currentTimeMillis() < timeout) {
+            Thread.sleep(10);
+        }
+
+        assertEquals(0, registry.size());
+        // The memoized settings are released along with their client
+        assertNotSame(settings, registry.getSettings(configuration("smtp.acme.com", 25, "user")));
+    }
+
+    @Test
+    public void shouldNotifyEvictionOfIdleSettings() throws Exception {
+        registry = new MailClientRegistry(20);
+        RelayBalancer relays = new RelayBalancer(CircuitBreaker.Config.defaults(), 60000);
+        registry.setEvictionListener(relays::evict);
+        SmtpSettings settings = registry.getSettings(configuration("smtp.acme.com", 25, "user"));
+        registry.acquire(vertx, relays.select(settings).getSettings(), 1).release();
+        assertEquals(1, relays.size());
+
+        long timeout = System.currentTimeMillis() + 5000;
+        while (relays.size() > 0 && System.currentTimeMillis() < timeout) {
+            Thread.sleep(10);
+        }
+
+        assertEquals(0, relays.size());
+        assertNull(relays.findSettings(settings.id()));
+    }
+
+    private static EmailNotifierConfiguration configuration(String host, int port, String username) {
+        EmailNotifierConfiguration configuration = new EmailNotifierConfiguration();
+        configuration.setHost(host);
+        configuration.setPort(port);
+        configuration.setUsername(username);
+        configuration.setPassword("password");
+        return configuration;
+    }
+}
@@ -0,0 +1,178 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.notifier.email.client;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.gravitee.notifier.email.client.RelayBalancer.Relay;
+import io.gravitee.notifier.email.configuration.EmailNotifierConfiguration;
+import io.gravitee.notifier.email.dispatch.CircuitBreaker;
+import io.gravitee.notifier.email.dispatch.CircuitOpenException;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import java.net.ConnectException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author GraviteeSource Team
+ */
+public class RelayBalancerTest {
+
+    private Vertx vertx;
+
+    private RelayBalancer balancer;
+
+    @BeforeEach
+    public void init() {
+        vertx = Vertx.vertx();
+        balancer = new RelayBalancer(new CircuitBreaker.Config(4, 2, 50, 100, 60000, 60000, 1), 60000);
+    }
+
+    @AfterEach
+    public void close() {
+        vertx.close();
+    }
+
+    @Test
+    public void shouldParseRelays() {
+        SmtpSettings settings = settings("ROUND_ROBIN", "smtp2.acme.com", " smtp3.acme.com:2525 ", "[::1]:26", "");
+
+        List<String> endpoints = settings
+            .endpoints()
+            .stream()
+            .map(endpoint -> endpoint.getHost() + ':' + endpoint.getPort())
+            .collect(Collectors.toList());
+
+        assertEquals(Arrays.asList("smtp.acme.com:25", "smtp2.acme.com:25", "smtp3.acme.com:2525", "::1:26"), endpoints);
+        assertEquals("user", settings.endpoints().get(1).getUsername());
+        assertThrows(IllegalArgumentException.class, () -> settings("ROUND_ROBIN", "smtp2.acme.com:smtp").endpoints());
+    }
+
+    @Test
+    public void shouldKeepIdentifierOfSettingsWithoutRelays() {
+        SmtpSettings settings = settings(null);
+
+        assertEquals(Arrays.asList(settings), settings.endpoints());
+        assertEquals(settings.id(), settings("LEAST_IN_FLIGHT").id());
+        assertNotEquals(settings.id(), settings(null, "smtp2.acme.com").id());
+    }
+
+    @Test
+    public void shouldSelectRelaysInTurn() {
+        SmtpSettings settings = settings("ROUND_ROBIN", "smtp2.acme.com", "smtp3.acme.com");
+
+        assertEquals(
+            Arrays.asList("smtp.acme.com", "smtp2.acme.com", "smtp3.acme.com", "smtp.acme.com"),
+            Arrays.asList(host(settings), host(settings), host(settings), host(settings))
+        );
+    }
+
+    @Test
+    public void shouldSelectRelayWithFewestEmailsInFlight() {
+        SmtpSettings settings = settings("LEAST_IN_FLIGHT", "smtp2.acme.com");
+
+        Relay busy = balancer.select(settings);
+        busy.send(vertx, () -> Promise.promise().future());
+
+        for (int i = 0; i < 4; i++) {
+            assertNotSame(busy, balancer.select(settings));
+        }
+    }
+
+    @Test
+    public void shouldSelectFastestRelay() throws InterruptedException {
+        SmtpSettings settings = settings("LATENCY_WEIGHTED", "smtp2.acme.com");
+        List<Relay> relays = balancer.getRelays(settings);
+
+        relays.get(0).send(vertx, () -> Future.succeededFuture());
+        Promise<Void> slow = Promise.promise();
+        relays.get(1).send(vertx, slow::future);
+        Thread.sleep(20);
+        slow.complete();
+
+        assertTrue(relays.get(0).getLatency() < relays.get(1).getLatency());
+        for (int i = 0; i < 4; i++) {
+            assertSame(relays.get(0), balancer.select(settings));
+        }
+    }
+
+    @Test
+    public void shouldNotSelectRelayWithOpenCircuit() {
+        SmtpSettings settings = settings("ROUND_ROBIN", "smtp2.acme.com");
+        Relay failing = balancer.getRelays(settings).get(1);
+
+        failing.send(vertx, () -> Future.failedFuture(new ConnectException("Connection refused")));
+        assertTrue(failing.isAvailable());
+        failing.send(vertx, () -> Future.failedFuture(new ConnectException("Connection refused")));
+        assertEquals(CircuitBreaker.State.OPEN, failing.getState());
+        assertFalse(failing.isAvailable());
+
+        for (int i = 0; i < 4; i++) {
+            assertNotSame(failing, balancer.select(settings));
+        }
+    }
+
+    @Test
+    public void shouldNotOpenCircuitOfRelayRefusingEmails() {
+        Relay relay = balancer.getRelays(settings("ROUND_ROBIN", "smtp2.acme.com")).get(0);
+
+        for (int i = 0; i < 4; i++) {
+            relay.send(vertx, () -> Future.failedFuture(new IllegalStateException("550 5.1.1 User unknown")));
+        }
+
+        assertEquals(CircuitBreaker.State.CLOSED, relay.getState());
+    }
+
+    @Test
+    public void shouldFailFastWhenAllCircuitsAreOpen() {
+        SmtpSettings settings = settings("ROUND_ROBIN", "smtp2.acme.com");
+        List<CircuitBreaker.State> transitions = new ArrayList<>();
+        balancer.setListener((relay, from, to) -> transitions.add(to));
+        for (Relay relay : balancer.getRelays(settings)) {
+            for (int i = 0; i < 2; i++) {
+                relay.send(vertx, () -> Future.failedFuture(new ConnectException("Connection refused")));
+            }
+        }
+
+        Future<Void> sent = balancer.select(settings).send(vertx, () -> fail("The email must not be sent"));
+
+        assertTrue(sent.failed());
+        assertTrue(sent.cause() instanceof CircuitOpenException);
+        assertEquals(Arrays.asList(CircuitBreaker.State.OPEN, CircuitBreaker.State.OPEN), transitions);
+    }
+
+    private String host(SmtpSettings settings) {
+        return balancer.select(settings).getSettings().getHost();
+    }
+
+    private static SmtpSettings settings(String strategy, String... relays) {
+        EmailNotifierConfiguration configuration = new EmailNotifierConfiguration();
+        configuration.setHost("smtp.acme.com");
+        configuration.setPort(25);
+        configuration.setUsername("user");
+        configuration.setPassword("password");
+        configuration.setRelayStrategy(strategy);
+        configuration.setRelays(relays.length == 0 ? null : Arrays.asList(relays));
+        return SmtpSettings.of(configuration);
+    }
+}
@@ -0,0 +1,186 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.notifier.email.dispatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.gravitee.notifier.email.dispatch.CircuitBreaker.State;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author GraviteeSource Team
+ */
+public class CircuitBreakerTest {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long SLOW = TimeUnit.SECONDS.toNanos(2);
+
+    private final AtomicLong now = new AtomicLong(TimeUnit.SECONDS.toNanos(100));
+    private final List<State> transitions = new ArrayList<>();
+
+    // Window of 10 calls, evaluated from 4 calls, opening at 50% of failures or 80% of calls slower than 1 second
+    private final CircuitBreaker breaker = new CircuitBreaker(
+        "smtp.acme.com:25",
+        new CircuitBreaker.Config(10, 4, 50, 80, 1000, 30000, 2),
+        (b, from, to) -> transitions.add(to),
+        now::get
+    );
+
+    @Test
+    public void shouldWaitForMinimumCallsBeforeOpening() {
+        call(true);
+        call(true);
+        call(true);
+        assertEquals(State.CLOSED, breaker.getState());
+
+        call(false);
+        assertEquals(State.OPEN, breaker.getState());
+        assertEquals(Arrays.asList(State.OPEN), transitions);
+    }
+
+    @Test
+    public void shouldStayClosedBelowFailureRateThreshold() {
+        for (int i = 0; i < 20; i++) {
+            call(i % 3 == 1);
+        }
+
+        assertEquals(State.CLOSED, breaker.getState());
+        assertTrue(breaker.getFailureRate() < 50);
+    }
+
+    @Test
+    public void shouldOnlyKeepLastCallsInWindow() {
+        for (int i = 0; i < 4; i++) {
+            call(false);
+        }
+        for (int i = 0; i < 3; i++) {
+            call(true);
+        }
+        // The 3 failures are pushed out of the window by 10 successful calls
+        for (int i = 0; i < 10; i++) {
+            call(false);
+        }
+        assertEquals(0, breaker.getFailureRate());
+
+        for (int i = 0; i < 4; i++) {
+            call(true);
+        }
+        assertEquals(State.CLOSED, breaker.getState());
+        call(true);
+        assertEquals(State.OPEN, breaker.getState());
+    }
+
+    @Test
+    public void shouldOpenOnSlowCalls() {
+        for (int i = 0; i < 4; i++) {
+            assertTrue(breaker.tryAcquire());
+            breaker.onResult(SLOW, false);
+        }
+
+        assertEquals(State.OPEN, breaker.getState());
+    }
+
+    @Test
+    public void shouldRefuseCallsWhileOpen() {
+        open();
+
+        assertFalse(breaker.isCallPermitted());
+        assertFalse(breaker.tryAcquire());
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(29));
+        assertFalse(breaker.tryAcquire());
+    }
+
+    @Test
+    public void shouldCloseAfterSuccessfulTrialCalls() {
+        open();
+        now.addAndGet(TimeUnit.SECONDS.toNanos(30));
+
+        assertTrue(breaker.isCallPermitted());
+        assertTrue(breaker.tryAcquire());
+        assertEquals(State.HALF_OPEN, breaker.getState());
+        assertTrue(breaker.tryAcquire());
+        // Only 2 trial calls
+        assertFalse(breaker.tryAcquire());
+
+        breaker.onResult(FAST, false);
+        assertEquals(State.HALF_OPEN, breaker.getState());
+        breaker.onResult(FAST, false);
+
+        assertEquals(State.CLOSED, breaker.getState());
+        assertEquals(Arrays.asList(State.OPEN, State.HALF_OPEN, State.CLOSED), transitions);
+        assertEquals(-1, breaker.getFailureRate());
+    }
+
+    @Test
+    public void shouldReopenAfterFailedTrialCalls() {
+        open();
+        now.addAndGet(TimeUnit.SECONDS.toNanos(30));
+
+        call(false);
+        call(true);
+
+        assertEquals(State.OPEN, breaker.getState());
+        assertEquals(Arrays.asList(State.OPEN, State.HALF_OPEN, State.OPEN), transitions);
+        assertFalse(breaker.tryAcquire());
+    }
+
+    @Test
+    public void shouldHalfOpenBeforeEndOfWait() {
+        open();
+
+        breaker.halfOpen();
+
+        assertEquals(State.HALF_OPEN, breaker.getState());
+        assertTrue(breaker.tryAcquire());
+    }
+
+    @Test
+    public void shouldIgnoreResultsWhileOpen() {
+        assertTrue(breaker.tryAcquire());
+        open();
+
+        // Outcome of a call started before the breaker opened
+        breaker.onResult(FAST, false);
+
+        assertEquals(State.OPEN, breaker.getState());
+        assertEquals(Arrays.asList(State.OPEN), transitions);
+    }
+
+    @Test
+    public void shouldRejectInvalidConfig() {
+        assertThrows(IllegalArgumentException.class, () -> new CircuitBreaker.Config(0, 1, 50, 80, 1000, 30000, 1));
+        assertThrows(IllegalArgumentException.class, () -> new CircuitBreaker.Config(10, 5, 0, 80, 1000, 30000, 1));
+        assertThrows(IllegalArgumentException.class, () -> new CircuitBreaker.Config(2, 1, 50, 80, 1000, 30000, 3));
+    }
+
+    private void open() {
+        for (int i = 0; i < 4; i++) {
+            call(true);
+        }
+        assertEquals(State.OPEN, breaker.getState());
+    }
+
+    private void call(boolean failed) {
+        assertTrue(breaker.tryAcquire());
+        breaker.onResult(FAST, failed);
+    }
+}
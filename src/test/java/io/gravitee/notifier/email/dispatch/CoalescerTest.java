@@ -0,0 +1,114 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.notifier.email.dispatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.ext.mail.MailMessage;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author GraviteeSource Team
+ */
+public class CoalescerTest {
+
+    private final Vertx vertx = Vertx.vertx();
+    private final List<MailMessage> sent = new CopyOnWriteArrayList<>();
+    private final Function<MailMessage, Future<?>> sender = mailMessage -> {
+        sent.add(mailMessage);
+        return Future.succeededFuture();
+    };
+
+    @AfterEach
+    public void tearDown() {
+        vertx.close();
+    }
+
+    @Test
+    public void shouldSendFirstEmailThenDigest() throws Exception {
+        Coalescer coalescer = new Coalescer(10);
+
+        coalescer.send(vertx, 50, mailMessage("to@mail.com", "Alert", "<p>1</p>"), "template", "target", sender);
+        Future<?> second = coalescer.send(vertx, 50, mailMessage("to@mail.com", "Alert", "<p>2</p>"), "template", "target", sender);
+        Future<?> third = coalescer.send(vertx, 50, mailMessage("to@mail.com", "Alert", "<p>3</p>"), "template", "target", sender);
+
+        assertEquals(1, sent.size());
+        assertTrue(second.succeeded());
+        assertTrue(third.succeeded());
+
+        awaitSent(2);
+        assertEquals(2, sent.size());
+        assertEquals("Alert (2 notifications)", sent.get(1).getSubject());
+        assertEquals("<p>2</p><hr/><p>3</p>", sent.get(1).getHtml());
+        assertEquals(1, coalescer.saved());
+        assertEquals(0, coalescer.size());
+    }
+
+    @Test
+    public void shouldNotCoalesceEmailsToOtherRecipients() {
+        Coalescer coalescer = new Coalescer(10);
+
+        coalescer.send(vertx, 1000, mailMessage("to@mail.com", "Alert", "<p>1</p>"), "template", "target", sender);
+        coalescer.send(vertx, 1000, mailMessage("other@mail.com", "Alert", "<p>2</p>"), "template", "target", sender);
+
+        assertEquals(2, sent.size());
+        assertEquals(2, coalescer.size());
+    }
+
+    @Test
+    public void shouldFlushOldestWindowWhenIndexIsFull() throws Exception {
+        Coalescer coalescer = new Coalescer(1);
+
+        coalescer.send(vertx, 1000, mailMessage("to@mail.com", "Alert", "<p>1</p>"), "template", "target", sender);
+        coalescer.send(vertx, 1000, mailMessage("to@mail.com", "Alert", "<p>2</p>"), "template", "target", sender);
+        coalescer.send(vertx, 1000, mailMessage("other@mail.com", "Alert", "<p>3</p>"), "template", "target", sender);
+
+        assertEquals(3, sent.size());
+        assertEquals("<p>2</p>", sent.get(1).getHtml());
+        assertEquals(1, coalescer.size());
+    }
+
+    @Test
+    public void shouldOnlyKeepBodiesOfHtmlDocumentsInDigest() throws Exception {
+        Coalescer coalescer = new Coalescer(10);
+
+        coalescer.send(vertx, 50, mailMessage("to@mail.com", "Alert", "<html><body>1</body></html>"), "template", "target", sender);
+        MailMessage second = mailMessage("to@mail.com", "Alert", "<HTML><BODY class=\"a\"><p>2</p></BODY></HTML>");
+        coalescer.send(vertx, 50, second, "template", "target", sender);
+        coalescer.send(vertx, 50, mailMessage("to@mail.com", "Alert", "<p>3</p>"), "template", "target", sender);
+
+        awaitSent(2);
+        assertEquals("<p>2</p><hr/><p>3</p>", sent.get(1).getHtml());
+    }
+
+    private static MailMessage mailMessage(String to, String subject, String html) {
+        return new MailMessage().setFrom("from@mail.com").setTo(to).setSubject(subject).setHtml(html);
+    }
+
+    private void awaitSent(int count) throws Exception {
+        final long timeout = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (sent.size() < count && System.nanoTime() < timeout) {
+            Thread.sleep(10);
+        }
+    }
+}
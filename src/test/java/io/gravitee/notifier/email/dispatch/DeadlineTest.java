@@ -0,0 +1,85 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.notifier.email.dispatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author GraviteeSource Team
+ */
+public class DeadlineTest {
+
+    private final Vertx vertx = Vertx.vertx();
+    private final AtomicLong now = new AtomicLong(TimeUnit.SECONDS.toNanos(100));
+
+    @AfterEach
+    public void tearDown() {
+        vertx.close();
+    }
+
+    @Test
+    public void shouldComputeRemainingTime() {
+        Deadline deadline = Deadline.after(1000, now::get);
+
+        assertEquals(1000, deadline.remaining());
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(400));
+        assertEquals(600, deadline.remaining());
+        now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        assertEquals(0, deadline.remaining());
+        assertTrue(deadline.isExpired());
+    }
+
+    @Test
+    public void shouldNotExpireWithoutTimeout() {
+        assertSame(Deadline.NONE, Deadline.after(0));
+        assertEquals(Long.MAX_VALUE, Deadline.NONE.remaining());
+        assertFalse(Deadline.NONE.isExpired());
+    }
+
+    @Test
+    public void shouldFailFutureNotCompletedInTime() throws Exception {
+        Throwable failure = awaitFailure(Deadline.after(50).bound(vertx, Promise.promise().future()));
+
+        assertTrue(failure instanceof TimeoutException);
+        assertTrue(SmtpFailures.isTransient(failure));
+    }
+
+    @Test
+    public void shouldKeepResultOfFutureCompletedInTime() throws Exception {
+        Promise<String> promise = Promise.promise();
+        Future<String> bounded = Deadline.timeout(vertx, promise.future(), 5000, TimeoutException::new);
+
+        promise.complete("sent");
+
+        assertEquals("sent", bounded.toCompletionStage().toCompletableFuture().get(5, TimeUnit.SECONDS));
+    }
+
+    private static Throwable awaitFailure(Future<?> future) throws Exception {
+        CompletableFuture<Throwable> failure = new CompletableFuture<>();
+        future.onComplete(e -> failure.complete(e.cause()));
+        return failure.get(5, TimeUnit.SECONDS);
+    }
+}
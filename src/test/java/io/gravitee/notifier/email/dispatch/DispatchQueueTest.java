@@ -0,0 +1,129 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.notifier.email.dispatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author GraviteeSource Team
+ */
+public class DispatchQueueTest {
+
+    private final Vertx vertx = Vertx.vertx();
+
+    @AfterEach
+    public void tearDown() {
+        vertx.close();
+    }
+
+    @Test
+    public void shouldQueueSendsAboveMaxInFlight() {
+        DispatchQueue queue = new DispatchQueue(10, 1, DispatchQueue.OverflowPolicy.REJECT, 0);
+        Promise<String> first = Promise.promise();
+        Promise<String> second = Promise.promise();
+
+        Future<String> firstSent = queue.submit(vertx, first::future);
+        Future<String> secondSent = queue.submit(vertx, second::future);
+
+        assertEquals(1, queue.inFlight());
+        assertEquals(1, queue.depth());
+
+        first.complete("first");
+        assertEquals("first", firstSent.result());
+        assertEquals(1, queue.inFlight());
+        assertEquals(0, queue.depth());
+
+        second.complete("second");
+        assertEquals("second", secondSent.result());
+        assertEquals(0, queue.inFlight());
+    }
+
+    @Test
+    public void shouldRejectSendWhenQueueIsFull() {
+        DispatchQueue queue = new DispatchQueue(1, 1, DispatchQueue.OverflowPolicy.REJECT, 0);
+        Promise<String> running = Promise.promise();
+
+        queue.submit(vertx, running::future);
+        Future<String> queued = queue.submit(vertx, () -> Future.succeededFuture("queued"));
+        Future<String> rejected = queue.submit(vertx, () -> Future.succeededFuture("rejected"));
+
+        assertTrue(rejected.failed());
+        assertTrue(rejected.cause() instanceof RejectedExecutionException);
+        assertEquals(1, queue.rejected());
+
+        running.complete();
+        assertEquals("queued", queued.result());
+    }
+
+    @Test
+    public void shouldDropOldestSendWhenQueueIsFull() {
+        DispatchQueue queue = new DispatchQueue(1, 1, DispatchQueue.OverflowPolicy.DROP_OLDEST, 0);
+        Promise<String> running = Promise.promise();
+
+        queue.submit(vertx, running::future);
+        Future<String> oldest = queue.submit(vertx, () -> Future.succeededFuture("oldest"));
+        Future<String> newest = queue.submit(vertx, () -> Future.succeededFuture("newest"));
+
+        assertTrue(oldest.failed());
+        assertEquals(1, queue.dropped());
+        assertEquals(1, queue.depth());
+
+        running.complete();
+        assertEquals("newest", newest.result());
+    }
+
+    @Test
+    public void shouldRejectBlockedSendAfterTimeout() {
+        DispatchQueue queue = new DispatchQueue(0, 1, DispatchQueue.OverflowPolicy.BLOCK, 10);
+
+        queue.submit(vertx, () -> Promise.<String>promise().future());
+        Future<String> blocked = queue.submit(vertx, () -> Future.succeededFuture("blocked"));
+
+        // The caller is not blocked, the send fails once the timeout has elapsed
+        assertFalse(blocked.isComplete());
+        ExecutionException failure = assertThrows(
+            ExecutionException.class,
+            () -> blocked.toCompletionStage().toCompletableFuture().get(5, TimeUnit.SECONDS)
+        );
+        assertTrue(failure.getCause() instanceof RejectedExecutionException);
+        assertEquals(1, queue.rejected());
+    }
+
+    @Test
+    public void shouldRunBlockedSendOnceRoomIsMade() {
+        DispatchQueue queue = new DispatchQueue(1, 1, DispatchQueue.OverflowPolicy.BLOCK, 60000);
+        Promise<String> running = Promise.promise();
+
+        queue.submit(vertx, running::future);
+        Future<String> queued = queue.submit(vertx, () -> Future.succeededFuture("queued"));
+        Future<String> blocked = queue.submit(vertx, () -> Future.succeededFuture("blocked"));
+
+        assertFalse(blocked.isComplete());
+        running.complete();
+        assertEquals("queued", queued.result());
+        assertEquals("blocked", blocked.result());
+        assertEquals(0, queue.rejected());
+    }
+}
@@ -0,0 +1,176 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.notifier.email.dispatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author GraviteeSource Team
+ */
+public class RetryPolicyTest {
+
+    private final Vertx vertx = Vertx.vertx();
+
+    @AfterEach
+    public void tearDown() {
+        vertx.close();
+    }
+
+    @Test
+    public void shouldComputeExponentialDelay() {
+        RetryPolicy policy = new RetryPolicy(10, 100, 1000, 0);
+
+        assertEquals(100, policy.delay(1));
+        assertEquals(200, policy.delay(2));
+        assertEquals(800, policy.delay(4));
+        assertEquals(1000, policy.delay(5));
+        assertEquals(1000, policy.delay(100));
+    }
+
+    @Test
+    public void shouldSpreadDelayWithJitter() {
+        RetryPolicy policy = new RetryPolicy(10, 1000, 1000, 0.5);
+
+        for (int i = 0; i < 100; i++) {
+            long delay = policy.delay(1);
+            assertTrue(delay >= 500 && delay <= 1500);
+        }
+    }
+
+    @Test
+    public void shouldRetryTransientFailures() throws Exception {
+        RetryPolicy policy = new RetryPolicy(3, 1, 1, 0);
+        AtomicInteger attempts = new AtomicInteger();
+        // Retries run as soon as they are scheduled, the test does not depend on the timers
+        Vertx immediate = mock(Vertx.class);
+        when(immediate.setTimer(anyLong(), any()))
+            .thenAnswer(invocation -> {
+                invocation.<Handler<Long>>getArgument(1).handle(0L);
+                return 0L;
+            });
+
+        String result = await(
+            policy.execute(
+                immediate,
+                attempt -> {
+                    attempts.incrementAndGet();
+                    return attempt < 3 ? Future.failedFuture("421 Service not available") : Future.succeededFuture("sent");
+                }
+            )
+        );
+
+        assertEquals("sent", result);
+        assertEquals(3, attempts.get());
+        verify(immediate, times(2)).setTimer(eq(1L), any());
+    }
+
+    @Test
+    public void shouldNotRetryPermanentFailures() throws Exception {
+        RetryPolicy policy = new RetryPolicy(3, 1, 1, 0);
+
+        Throwable failure = awaitFailure(policy.execute(vertx, attempt -> Future.failedFuture("550 Mailbox unavailable")));
+
+        assertFalse(failure instanceof SendFailedException);
+        assertEquals("550 Mailbox unavailable", failure.getMessage());
+        assertFalse(SmtpFailures.isTransient(failure));
+    }
+
+    @Test
+    public void shouldNotRetryEmailsRejectedByDispatchQueue() throws Exception {
+        RetryPolicy policy = new RetryPolicy(3, 1, 1, 0);
+        AtomicInteger attempts = new AtomicInteger();
+
+        Throwable failure = awaitFailure(
+            policy.execute(
+                vertx,
+                attempt -> {
+                    attempts.incrementAndGet();
+                    return Future.failedFuture(new DispatchRejectedException("Email dispatch queue is full"));
+                }
+            )
+        );
+
+        assertTrue(failure instanceof DispatchRejectedException);
+        assertEquals(1, attempts.get());
+        assertFalse(SmtpFailures.isTransient(failure));
+    }
+
+    @Test
+    public void shouldNotRetryTimedOutTransactions() throws Exception {
+        RetryPolicy policy = new RetryPolicy(3, 1, 1, 0);
+        AtomicInteger attempts = new AtomicInteger();
+
+        Throwable failure = awaitFailure(
+            policy.execute(
+                vertx,
+                attempt -> {
+                    attempts.incrementAndGet();
+                    return Future.failedFuture(new SendTimeoutException("Sending email timed out"));
+                }
+            )
+        );
+
+        assertTrue(failure instanceof SendTimeoutException);
+        assertEquals(1, attempts.get());
+    }
+
+    @Test
+    public void shouldReportAttemptsWhenRetriesAreExhausted() throws Exception {
+        RetryPolicy policy = new RetryPolicy(2, 1, 1, 0);
+
+        Throwable failure = awaitFailure(policy.execute(vertx, attempt -> Future.failedFuture(new IOException("Connection reset"))));
+
+        assertTrue(failure instanceof SendFailedException);
+        assertEquals(2, ((SendFailedException) failure).getAttempts());
+        assertTrue(SmtpFailures.isTransient(failure));
+    }
+
+    @Test
+    public void shouldNotRetryPastDeadline() throws Exception {
+        RetryPolicy policy = new RetryPolicy(3, 1000, 1000, 0);
+
+        Throwable failure = awaitFailure(
+            policy.execute(vertx, Deadline.after(500), attempt -> Future.failedFuture(new IOException("Connection reset")))
+        );
+
+        assertTrue(failure instanceof SendFailedException);
+        assertEquals(1, ((SendFailedException) failure).getAttempts());
+    }
+
+    private static <T> T await(Future<T> future) throws Exception {
+        return future.toCompletionStage().toCompletableFuture().get(30, TimeUnit.SECONDS);
+    }
+
+    private static Throwable awaitFailure(Future<?> future) throws Exception {
+        CompletableFuture<Throwable> failure = new CompletableFuture<>();
+        future.onComplete(e -> failure.complete(e.cause()));
+        return failure.get(30, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,77 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.notifier.email.dispatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+import io.vertx.core.Vertx;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author GraviteeSource Team
+ */
+public class TokenBucketTest {
+
+    private final AtomicLong now = new AtomicLong(TimeUnit.SECONDS.toNanos(100));
+
+    @Test
+    public void shouldAllowBurstThenSpaceSends() {
+        TokenBucket bucket = new TokenBucket(10, 3, now::get);
+
+        assertEquals(0, bucket.reserve());
+        assertEquals(0, bucket.reserve());
+        assertEquals(0, bucket.reserve());
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(100), bucket.reserve());
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(200), bucket.reserve());
+    }
+
+    @Test
+    public void shouldRefillOverTime() {
+        TokenBucket bucket = new TokenBucket(10, 2, now::get);
+
+        bucket.reserve();
+        bucket.reserve();
+        assertTrue(bucket.reserve() > 0);
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        assertEquals(0, bucket.reserve());
+        assertEquals(0, bucket.reserve());
+    }
+
+    @Test
+    public void shouldRoundAcquireDelayUp() {
+        TokenBucket bucket = new TokenBucket(3, 1, now::get);
+        Vertx vertx = mock(Vertx.class);
+
+        assertTrue(bucket.acquire(vertx).succeeded());
+        bucket.acquire(vertx);
+
+        // 333.33 ms until the next token
+        verify(vertx).setTimer(eq(334L), any());
+    }
+
+    @Test
+    public void shouldUseRateAsDefaultBurst() {
+        TokenBucket bucket = new TokenBucket(5, 0, now::get);
+
+        assertEquals(5, bucket.getBurst());
+    }
+}
@@ -0,0 +1,73 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.notifier.email.html;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author GraviteeSource Team
+ */
+public class DataUriTest {
+
+    @Test
+    public void shouldDecodeDataUriInPlace() {
+        String html = "<img src=\" data:image/PNG;base64,SGVsbG8gd29ybGQ= \">";
+
+        DataUri dataUri = DataUri.parse(html, 10, html.length() - 2);
+
+        assertEquals("image/png", dataUri.getMimeType());
+        assertEquals("Hello world", dataUri.getData().toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void shouldDecodeLikeJdkDecoder() {
+        for (int length = 0; length < 64; length++) {
+            byte[] bytes = new byte[length];
+            for (int i = 0; i < length; i++) {
+                bytes[i] = (byte) (i * 37);
+            }
+            String uri = "data:image/gif;base64," + Base64.getEncoder().encodeToString(bytes);
+
+            assertArrayEquals(bytes, DataUri.parse(uri, 0, uri.length()).getData().getBytes());
+        }
+    }
+
+    @Test
+    public void shouldIgnoreWhitespaceInPayload() {
+        String uri = "data:image/png;base64,SGVs\nbG8g\r\nd29y bGQ=";
+
+        assertEquals("Hello world", DataUri.parse(uri, 0, uri.length()).getData().toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void shouldRejectNonBase64DataUri() {
+        String uri = "data:image/svg+xml,%3Csvg%3E";
+
+        assertThrows(IllegalArgumentException.class, () -> DataUri.parse(uri, 0, uri.length()));
+    }
+
+    @Test
+    public void shouldExtractMimeType() {
+        assertEquals("image/svg+xml", DataUri.mimeType("data:image/svg+xml;base64,PHN2Zz4="));
+        assertEquals("image/jpeg", DataUri.mimeType("data:IMAGE/JPEG;base64,"));
+        assertEquals("", DataUri.mimeType("data:;base64,AAAA"));
+        assertEquals("", DataUri.mimeType("image.png"));
+    }
+}
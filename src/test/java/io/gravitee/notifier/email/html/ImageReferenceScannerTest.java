@@ -0,0 +1,60 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.notifier.email.html;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.gravitee.notifier.email.html.ImageReferenceScanner.ImageReference;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author GraviteeSource Team
+ */
+public class ImageReferenceScannerTest {
+
+    @Test
+    public void shouldNotFindImageInPlainHtml() {
+        assertTrue(ImageReferenceScanner.scan("<div><p>No image <b>here</b></p><imgs src=\"logo.png\"></div>").isEmpty());
+    }
+
+    @Test
+    public void shouldFindQuotedAndUnquotedSources() {
+        String html = "<IMG alt='a > b' SRC = \" logo.png \"/><p>text</p><img width=10 src=images/icon.gif>";
+
+        List<ImageReference> references = ImageReferenceScanner.scan(html);
+
+        assertEquals(2, references.size());
+        assertEquals("logo.png", references.get(0).value(html));
+        assertEquals(" logo.png ", html.substring(references.get(0).start(), references.get(0).end()));
+        assertEquals("images/icon.gif", references.get(1).value(html));
+        assertEquals("images/icon.gif", html.substring(references.get(1).start(), references.get(1).end()));
+    }
+
+    @Test
+    public void shouldIgnoreImagesInCommentsAndWithoutSource() {
+        String html = "<!-- <img src=\"hidden.png\"> --><img alt=\"no source\"><img src=\"\"><img src=\" \"><img data-src=\"lazy.png\">";
+
+        assertTrue(ImageReferenceScanner.scan(html).isEmpty());
+    }
+
+    @Test
+    public void shouldUnescapeSource() {
+        String html = "<img src=\"logo.png?size=1&amp;theme=dark\">";
+
+        assertEquals("logo.png?size=1&theme=dark", ImageReferenceScanner.scan(html).get(0).value(html));
+    }
+}
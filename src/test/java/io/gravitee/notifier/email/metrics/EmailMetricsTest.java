@@ -0,0 +1,114 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.notifier.email.metrics;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.gravitee.notifier.email.client.MailClientRegistry;
+import io.gravitee.notifier.email.dispatch.CircuitBreaker;
+import io.gravitee.notifier.email.dispatch.DispatchQueue;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.ext.mail.MailAttachment;
+import io.vertx.ext.mail.MailMessage;
+import io.vertx.ext.mail.impl.MailAttachmentImpl;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author GraviteeSource Team
+ */
+public class EmailMetricsTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final DispatchQueue dispatchQueue = new DispatchQueue(10, 1, DispatchQueue.OverflowPolicy.REJECT, 0);
+    private final EmailMetrics metrics = new EmailMetrics(dispatchQueue, new MailClientRegistry());
+
+    @Test
+    public void shouldTagMetersByHost() {
+        metrics.setMeterRegistry(registry);
+
+        metrics.host("smtp.mail.com").success();
+        metrics.host("smtp.mail.com").success();
+        metrics.host("other.mail.com").failure();
+        metrics.host(null).recordSend(System.nanoTime());
+
+        assertEquals(2, registry.get("notifier.email.success").tag("host", "smtp.mail.com").counter().count());
+        assertEquals(1, registry.get("notifier.email.failure").tag("host", "other.mail.com").counter().count());
+        assertEquals(1, registry.get("notifier.email.send").tag("host", "unknown").timer().count());
+    }
+
+    @Test
+    public void shouldRecordMessageAndAttachmentSizes() {
+        metrics.setMeterRegistry(registry);
+
+        MailAttachment attachment = new MailAttachmentImpl();
+        attachment.setData(Buffer.buffer(new byte[128]));
+        metrics.host("smtp.mail.com").recordMessage(new MailMessage().setHtml("<p>Hello</p>").setInlineAttachment(attachment));
+
+        assertEquals(12, registry.get("notifier.email.message.size").summary().totalAmount());
+        assertEquals(128, registry.get("notifier.email.attachment.size").summary().totalAmount());
+    }
+
+    @Test
+    public void shouldRecordCircuitBreakerTransitions() {
+        metrics.setMeterRegistry(registry);
+
+        metrics.relay("smtp.mail.com:25").circuitTransition(CircuitBreaker.State.OPEN);
+        metrics.relay("smtp.mail.com:2525").circuitTransition(CircuitBreaker.State.OPEN);
+        assertEquals(2, registry.get("notifier.email.circuit.state").tag("relay", "smtp.mail.com:25").gauge().value());
+
+        metrics.relay("smtp.mail.com:25").circuitTransition(CircuitBreaker.State.HALF_OPEN);
+        metrics.relay("smtp.mail.com:25").circuitTransition(CircuitBreaker.State.CLOSED);
+        assertEquals(0, registry.get("notifier.email.circuit.state").tag("relay", "smtp.mail.com:25").gauge().value());
+        // Another relay on the same host keeps its own state
+        assertEquals(2, registry.get("notifier.email.circuit.state").tag("relay", "smtp.mail.com:2525").gauge().value());
+        assertEquals(
+            1,
+            registry.get("notifier.email.circuit.transitions").tags("relay", "smtp.mail.com:25", "state", "open").counter().count()
+        );
+        assertEquals(
+            1,
+            registry.get("notifier.email.circuit.transitions").tags("relay", "smtp.mail.com:25", "state", "closed").counter().count()
+        );
+    }
+
+    @Test
+    public void shouldPublishGauges() {
+        metrics.setMeterRegistry(registry);
+
+        assertEquals(0, registry.get("notifier.email.inflight").gauge().value());
+        assertEquals(0, registry.get("notifier.email.pool.clients").gauge().value());
+    }
+
+    @Test
+    public void shouldRecordQueueWaitTime() {
+        metrics.setMeterRegistry(registry);
+        Vertx vertx = Vertx.vertx();
+        try {
+            Promise<Void> first = Promise.promise();
+            dispatchQueue.submit(vertx, first::future);
+            dispatchQueue.submit(vertx, Future::<Void>succeededFuture);
+            first.complete();
+
+            assertEquals(2, registry.get("notifier.email.queue.wait").timer().count());
+        } finally {
+            vertx.close();
+        }
+    }
+}
@@ -0,0 +1,79 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.notifier.email.recipient;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author GraviteeSource Team
+ */
+public class RecipientParserTest {
+
+    @Test
+    public void shouldSplitOnSeparatorsWithoutEmptyRecipients() {
+        assertEquals(
+            Arrays.asList("a@x.com", "b@y.com", "c@z.com", "d@z.com"),
+            RecipientParser.tokenize(" a@x.com, b@y.com;c@z.com\td@z.com ,, ")
+        );
+    }
+
+    @Test
+    public void shouldParseDisplayNamesAndGroups() {
+        assertEquals(
+            Arrays.asList("john@x.com", "jane@y.com", "a@x.com", "b@y.com", "c@z.com"),
+            RecipientParser.tokenize("John Doe <john@x.com>, \"Smith, Jane\" <jane@y.com>, Team: a@x.com, b@y.com; c@z.com (ops)")
+        );
+        assertEquals(Collections.singletonList("\"john doe\"@x.com"), RecipientParser.tokenize("\"john doe\"@x.com"));
+        assertTrue(RecipientParser.tokenize("Undisclosed recipients:;").isEmpty());
+    }
+
+    @Test
+    public void shouldIgnoreInvalidAddresses() {
+        assertEquals(
+            Arrays.asList("ok@x.com", "ok@[127.0.0.1]"),
+            RecipientParser.tokenize("invalid, @x.com, a@, a..b@x.com, .a@x.com, a@-x.com, a@x..com, ok@x.com, ok@[127.0.0.1], <a@x.com")
+        );
+    }
+
+    @Test
+    public void shouldRemoveDuplicatesIgnoringCase() {
+        assertEquals(Arrays.asList("A@X.com", "b@y.com"), RecipientParser.tokenize("A@X.com, b@y.com, a@x.com, Someone <a@X.COM>"));
+
+        final StringBuilder recipients = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            recipients.append("User-").append(i % 40).append(i < 40 ? "@x.com, " : "@X.COM, ");
+        }
+        assertEquals(40, RecipientParser.tokenize(recipients.toString()).size());
+    }
+
+    @Test
+    public void shouldCacheParsedRecipients() {
+        final RecipientParser parser = new RecipientParser(4);
+
+        final List<String> first = parser.parse("a@x.com, b@y.com");
+        final List<String> second = parser.parse("a@x.com, b@y.com");
+
+        assertSame(first, second);
+        assertEquals(1, parser.hits());
+        assertEquals(1, parser.misses());
+        assertThrows(UnsupportedOperationException.class, () -> first.add("c@z.com"));
+    }
+}
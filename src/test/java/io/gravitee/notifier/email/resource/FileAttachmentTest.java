@@ -0,0 +1,110 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.notifier.email.resource;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.file.AsyncFile;
+import io.vertx.ext.mail.MailAttachment;
+import io.vertx.ext.mail.MailMessage;
+import io.vertx.ext.mail.impl.MailAttachmentImpl;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * @author GraviteeSource Team
+ */
+public class FileAttachmentTest {
+
+    private final Vertx vertx = Vertx.vertx();
+
+    @TempDir
+    Path attachments;
+
+    @AfterEach
+    public void tearDown() {
+        vertx.close();
+    }
+
+    @Test
+    public void shouldReferenceFileWithoutReadingIt() throws Exception {
+        Files.write(attachments.resolve("report.pdf"), new byte[] { 1, 2, 3 });
+
+        FileAttachment attachment = FileAttachment.of(attachments, "report.pdf", 1024);
+
+        assertEquals("report.pdf", attachment.getName());
+        assertEquals("attachment", attachment.getDisposition());
+        assertEquals(3, attachment.getSize());
+        assertNull(attachment.getData());
+        assertNull(attachment.getStream());
+    }
+
+    @Test
+    public void shouldRejectFileOutsideOfDirectory() throws Exception {
+        Path directory = Files.createDirectory(attachments.resolve("public"));
+        Path secret = Files.write(attachments.resolve("secret.txt"), new byte[] { 1 });
+        Files.createSymbolicLink(directory.resolve("link.txt"), secret);
+
+        assertThrows(IllegalArgumentException.class, () -> FileAttachment.of(directory, "../secret.txt", 1024));
+        assertThrows(IllegalArgumentException.class, () -> FileAttachment.of(directory, secret.toString(), 1024));
+        assertThrows(IllegalArgumentException.class, () -> FileAttachment.of(directory, "link.txt", 1024));
+        assertThrows(IllegalArgumentException.class, () -> FileAttachment.of(directory, "missing.txt", 1024));
+    }
+
+    @Test
+    public void shouldRejectTooLargeFile() throws Exception {
+        Files.write(attachments.resolve("large.bin"), new byte[2048]);
+
+        assertThrows(IllegalArgumentException.class, () -> FileAttachment.of(attachments, "large.bin", 1024));
+    }
+
+    @Test
+    public void shouldStreamFileOfEachSend() throws Exception {
+        Files.write(attachments.resolve("report.pdf"), new byte[] { 1, 2, 3 });
+        MailAttachment inline = new MailAttachmentImpl().setName("notes.txt");
+        MailMessage mailMessage = new MailMessage()
+            .setTo("john@example.com")
+            .setAttachment(List.of(FileAttachment.of(attachments, "report.pdf", 1024), inline));
+
+        MailMessage first = FileAttachment.open(vertx, mailMessage).toCompletionStage().toCompletableFuture().get(5, TimeUnit.SECONDS);
+        MailMessage second = FileAttachment.open(vertx, mailMessage).toCompletionStage().toCompletableFuture().get(5, TimeUnit.SECONDS);
+
+        assertNotSame(mailMessage, first);
+        assertTrue(mailMessage.getAttachment().get(0) instanceof FileAttachment);
+        MailAttachment streamed = first.getAttachment().get(0);
+        assertTrue(streamed.getStream() instanceof AsyncFile);
+        assertEquals("report.pdf", streamed.getName());
+        assertEquals(3, streamed.getSize());
+        assertNotSame(streamed.getStream(), second.getAttachment().get(0).getStream());
+        assertSame(inline, first.getAttachment().get(1));
+
+        FileAttachment.close(first);
+        FileAttachment.close(second);
+    }
+
+    @Test
+    public void shouldNotCopyMessageWithoutFileAttachment() throws Exception {
+        MailMessage mailMessage = new MailMessage().setTo("john@example.com");
+
+        assertSame(mailMessage, FileAttachment.open(vertx, mailMessage).toCompletionStage().toCompletableFuture().get(5, TimeUnit.SECONDS));
+    }
+}
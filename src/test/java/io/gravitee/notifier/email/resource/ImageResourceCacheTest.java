@@ -0,0 +1,79 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.notifier.email.resource;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * @author GraviteeSource Team
+ */
+public class ImageResourceCacheTest {
+
+    @TempDir
+    Path templates;
+
+    @Test
+    public void shouldReadImageOnlyOnce() throws Exception {
+        Path logo = Files.write(templates.resolve("logo.png"), new byte[] { 1, 2, 3 });
+        ImageResourceCache cache = new ImageResourceCache(1024);
+
+        ImageResourceCache.ImageResource first = cache.get(logo);
+        ImageResourceCache.ImageResource second = cache.get(logo);
+
+        assertSame(first, second);
+        assertEquals("image/png", first.getContentType());
+        assertArrayEquals(new byte[] { 1, 2, 3 }, first.getData().getBytes());
+        assertEquals(1, cache.hits());
+        assertEquals(1, cache.misses());
+    }
+
+    @Test
+    public void shouldReloadModifiedImage() throws Exception {
+        Path logo = Files.write(templates.resolve("logo.png"), new byte[] { 1, 2, 3 });
+        ImageResourceCache cache = new ImageResourceCache(1024);
+        cache.get(logo);
+
+        Files.write(logo, new byte[] { 4, 5 });
+        Files.setLastModifiedTime(logo, FileTime.fromMillis(Files.getLastModifiedTime(logo).toMillis() + 1000));
+
+        assertArrayEquals(new byte[] { 4, 5 }, cache.get(logo).getData().getBytes());
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void shouldEvictImagesAboveByteBudget() throws Exception {
+        Path first = Files.write(templates.resolve("first.png"), new byte[6]);
+        Path second = Files.write(templates.resolve("second.png"), new byte[6]);
+        Path tooBig = Files.write(templates.resolve("big.png"), new byte[20]);
+        ImageResourceCache cache = new ImageResourceCache(10);
+
+        cache.get(first);
+        cache.get(second);
+        assertEquals(6, cache.size());
+
+        assertEquals(20, cache.get(tooBig).size());
+        assertEquals(6, cache.size());
+
+        cache.get(second);
+        assertEquals(1, cache.hits());
+    }
+}
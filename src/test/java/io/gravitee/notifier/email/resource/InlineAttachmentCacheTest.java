@@ -0,0 +1,73 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.notifier.email.resource;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.gravitee.notifier.email.resource.InlineAttachmentCache.InlineAttachment;
+import io.vertx.core.buffer.Buffer;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author GraviteeSource Team
+ */
+public class InlineAttachmentCacheTest {
+
+    @Test
+    public void shouldShareAttachmentOfSameContent() {
+        InlineAttachmentCache cache = new InlineAttachmentCache(1024);
+
+        InlineAttachment first = cache.get("image/png", Buffer.buffer(new byte[] { 1, 2, 3 }));
+        InlineAttachment second = cache.get("image/png", Buffer.buffer(new byte[] { 1, 2, 3 }));
+
+        assertSame(first, second);
+        assertSame(first.getAttachment(), second.getAttachment());
+        assertEquals(1, cache.hits());
+        assertEquals(1, cache.misses());
+        assertEquals('<' + first.getContentId() + '>', first.getAttachment().getContentId());
+        assertEquals("inline", first.getAttachment().getDisposition());
+    }
+
+    @Test
+    public void shouldDeriveContentIdFromContent() {
+        InlineAttachmentCache cache = new InlineAttachmentCache(1024);
+
+        InlineAttachment png = cache.get("image/png", Buffer.buffer(new byte[] { 1, 2, 3 }));
+        InlineAttachment other = cache.get("image/png", Buffer.buffer(new byte[] { 3, 2, 1 }));
+        InlineAttachment gif = cache.get("image/gif", Buffer.buffer(new byte[] { 1, 2, 3 }));
+
+        assertNotEquals(png.getContentId(), other.getContentId());
+        assertEquals(png.getContentId(), gif.getContentId());
+        assertNotSame(png.getAttachment(), gif.getAttachment());
+        assertEquals(32, png.getContentId().length());
+
+        InlineAttachment same = new InlineAttachmentCache(1024).get("image/png", Buffer.buffer(new byte[] { 1, 2, 3 }));
+        assertEquals(png.getContentId(), same.getContentId());
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsedAttachments() {
+        InlineAttachmentCache cache = new InlineAttachmentCache(4);
+
+        cache.get("image/png", Buffer.buffer(new byte[] { 1, 2 }));
+        cache.get("image/png", Buffer.buffer(new byte[] { 3, 4 }));
+        cache.get("image/png", Buffer.buffer(new byte[] { 5, 6 }));
+
+        assertEquals(4, cache.size());
+        cache.get("image/png", Buffer.buffer(new byte[] { 1, 2 }));
+        assertEquals(4, cache.misses());
+    }
+}
@@ -0,0 +1,125 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.notifier.email.spool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.gravitee.notifier.email.spool.MailSpool.SpooledMail;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.ext.mail.MailAttachment;
+import io.vertx.ext.mail.MailMessage;
+import io.vertx.ext.mail.impl.MailAttachmentImpl;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * @author GraviteeSource Team
+ */
+public class MailSpoolTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void shouldReplayEmailsAfterReopeningSpool() throws IOException {
+        MailSpool spool = new MailSpool(directory, 4096);
+        spool.append("target-1", mailMessage("first@mail.com"));
+        spool.append("target-2", mailMessage("second@mail.com"));
+        spool.close();
+
+        spool = new MailSpool(directory, 4096);
+        assertEquals(2, spool.size());
+
+        List<SpooledMail> pending = spool.pending(10, target -> true);
+        assertEquals(2, pending.size());
+        assertEquals("target-1", pending.get(0).getTarget());
+        assertEquals(Collections.singletonList("first@mail.com"), pending.get(0).getMailMessage().getTo());
+        assertEquals("<html>first@mail.com</html>", pending.get(0).getMailMessage().getHtml());
+
+        MailAttachment attachment = pending.get(0).getMailMessage().getInlineAttachment().get(0);
+        assertEquals("<image>", attachment.getContentId());
+        assertEquals("image/png", attachment.getContentType());
+        assertEquals(Buffer.buffer(new byte[] { 1, 2, 3 }), attachment.getData());
+    }
+
+    @Test
+    public void shouldOnlyReturnEmailsOfKnownTargets() throws IOException {
+        MailSpool spool = new MailSpool(directory, 4096);
+        spool.append("target-1", mailMessage("first@mail.com"));
+        spool.append("target-2", mailMessage("second@mail.com"));
+
+        List<SpooledMail> pending = spool.pending(10, "target-2"::equals);
+
+        assertEquals(1, pending.size());
+        assertEquals("target-2", pending.get(0).getTarget());
+    }
+
+    @Test
+    public void shouldDeleteSegmentsOnceAcknowledged() throws IOException {
+        MailSpool spool = new MailSpool(directory, 512);
+        for (int i = 0; i < 5; i++) {
+            spool.append("target", mailMessage("user" + i + "@mail.com"));
+        }
+        assertTrue(segments() > 1);
+
+        for (SpooledMail mail : spool.pending(10, target -> true)) {
+            spool.acknowledge(mail);
+        }
+
+        assertEquals(0, spool.size());
+        assertEquals(1, segments());
+        assertTrue(spool.pending(10, target -> true).isEmpty());
+    }
+
+    @Test
+    public void shouldRejectEmailsOnceClosed() throws IOException {
+        MailSpool spool = new MailSpool(directory, 4096);
+        spool.append("target", mailMessage("first@mail.com"));
+        spool.close();
+        spool.close();
+
+        assertThrows(IOException.class, () -> spool.append("target", mailMessage("second@mail.com")));
+        assertTrue(spool.pending(10, target -> true).isEmpty());
+        assertEquals(1, new MailSpool(directory, 4096).size());
+    }
+
+    private long segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+
+    private static MailMessage mailMessage(String recipient) {
+        MailAttachment attachment = new MailAttachmentImpl();
+        attachment.setContentId("<image>");
+        attachment.setContentType("image/png");
+        attachment.setDisposition("inline");
+        attachment.setData(Buffer.buffer(new byte[] { 1, 2, 3 }));
+
+        return new MailMessage()
+            .setFrom("from@mail.com")
+            .setTo(recipient)
+            .setSubject("Subject")
+            .setHtml("<html>" + recipient + "</html>")
+            .setInlineAttachment(attachment);
+    }
+}
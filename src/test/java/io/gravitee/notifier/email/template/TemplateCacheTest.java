@@ -0,0 +1,72 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.notifier.email.template;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import freemarker.template.Configuration;
+import freemarker.template.Template;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author GraviteeSource Team
+ */
+public class TemplateCacheTest {
+
+    private final Configuration configuration = new Configuration(Configuration.VERSION_2_3_28);
+
+    private TemplateCache cache;
+
+    @BeforeEach
+    public void init() {
+        cache = new TemplateCache(2);
+    }
+
+    @Test
+    public void shouldParseTemplateOnlyOnce() throws Exception {
+        Template first = cache.get("Hello ${name}", configuration);
+        Template second = cache.get("Hello ${name}", configuration);
+
+        assertSame(first, second);
+        assertEquals(1, cache.misses());
+        assertEquals(1, cache.hits());
+    }
+
+    @Test
+    public void shouldNotShareTemplatesBetweenConfigurations() throws Exception {
+        Template first = cache.get("Hello ${name}", configuration);
+        Template second = cache.get("Hello ${name}", new Configuration(Configuration.VERSION_2_3_28));
+
+        assertNotSame(first, second);
+        assertEquals(2, cache.misses());
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsedTemplate() throws Exception {
+        Template first = cache.get("first", configuration);
+        cache.get("second", configuration);
+        cache.get("first", configuration);
+        cache.get("third", configuration);
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.evictions());
+        assertSame(first, cache.get("first", configuration));
+
+        cache.get("second", configuration);
+        assertEquals(4, cache.misses());
+    }
+}
@@ -0,0 +1,55 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.notifier.email.template;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import freemarker.template.Configuration;
+import freemarker.template.Template;
+import io.gravitee.notifier.email.template.VariableUsage.Usage;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author GraviteeSource Team
+ */
+public class VariableUsageTest {
+
+    private final Configuration configuration = new Configuration(Configuration.VERSION_2_3_28);
+
+    @Test
+    public void shouldDetectUnusedVariable() throws Exception {
+        assertEquals(Usage.NONE, usage("Dear recipient, ${recipients} and ${name}"));
+    }
+
+    @Test
+    public void shouldDetectPlainInterpolations() throws Exception {
+        assertEquals(Usage.INTERPOLATED, usage("Hello ${recipient}, <#if name??>${name} to ${recipient}</#if>"));
+    }
+
+    @Test
+    public void shouldDetectOtherUses() throws Exception {
+        assertEquals(Usage.OTHER, usage("${recipient} <#if recipient?ends_with(\"@corp\")>internal</#if>"));
+        assertEquals(Usage.OTHER, usage("${recipient?upper_case}"));
+        assertEquals(Usage.OTHER, usage("<#assign to = recipient>${to}"));
+        assertEquals(Usage.OTHER, usage("${.vars['recip' + 'ient']}"));
+        assertEquals(Usage.OTHER, usage("<#escape x as x?html>${recipient}</#escape>"));
+        assertEquals(Usage.OTHER, usage("<#ftl output_format=\"HTML\">${recipient}"));
+    }
+
+    private Usage usage(final String source) throws Exception {
+        return VariableUsage.of(new Template("inline", source, configuration), "recipient");
+    }
+}
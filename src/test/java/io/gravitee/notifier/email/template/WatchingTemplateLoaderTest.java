@@ -0,0 +1,111 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.notifier.email.template;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * @author GraviteeSource Team
+ */
+public class WatchingTemplateLoaderTest {
+
+    @TempDir
+    Path directory;
+
+    private final List<Path> changes = new CopyOnWriteArrayList<>();
+
+    private WatchingTemplateLoader loader;
+
+    @BeforeEach
+    public void init() throws IOException {
+        Files.writeString(directory.resolve("header.html"), "Hello");
+        loader = new WatchingTemplateLoader(directory, 200, changes::add);
+    }
+
+    @AfterEach
+    public void close() throws IOException {
+        loader.close();
+    }
+
+    @Test
+    public void shouldServeTemplatesFromMemory() throws IOException {
+        final Object source = loader.findTemplateSource("header.html");
+        assertEquals("Hello", read(source));
+
+        Files.delete(directory.resolve("header.html"));
+
+        // Not reloaded until the watcher reports the change
+        assertSame(source, loader.findTemplateSource("header.html"));
+    }
+
+    @Test
+    public void shouldReloadChangedTemplates() throws Exception {
+        final Object source = loader.findTemplateSource("header.html");
+
+        Files.writeString(directory.resolve("header.html"), "Hi");
+        awaitChange(directory.resolve("header.html"));
+
+        final Object reloaded = loader.findTemplateSource("header.html");
+        assertEquals("Hi", read(reloaded));
+        assertTrue(loader.getLastModified(reloaded) > loader.getLastModified(source));
+    }
+
+    @Test
+    public void shouldFindCreatedTemplates() throws Exception {
+        assertNull(loader.findTemplateSource("footer.html"));
+
+        Files.writeString(directory.resolve("footer.html"), "Bye");
+        awaitChange(directory.resolve("footer.html"));
+
+        assertEquals("Bye", read(loader.findTemplateSource("footer.html")));
+    }
+
+    @Test
+    public void shouldNotServeFilesOutsideOfDirectory() throws IOException {
+        assertNull(loader.findTemplateSource("../header.html"));
+        assertTrue(loader.watches(directory.resolve("images/logo.png")));
+        assertFalse(loader.watches(directory.resolve("../logo.png")));
+    }
+
+    private void awaitChange(final Path path) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 30000;
+        while (!changes.contains(path)) {
+            assertTrue(System.currentTimeMillis() < deadline, "No change reported for " + path);
+            Thread.sleep(20);
+        }
+    }
+
+    private String read(final Object source) throws IOException {
+        final StringWriter writer = new StringWriter();
+        try (Reader reader = loader.getReader(source, StandardCharsets.UTF_8.name())) {
+            reader.transferTo(writer);
+        }
+        return writer.toString();
+    }
+}
@@ -0,0 +1,100 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.notifier.email.template;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.gravitee.notifier.email.template.WriterPool.PooledWriter;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author GraviteeSource Team
+ */
+public class WriterPoolTest {
+
+    @Test
+    public void shouldWriteAndReadInPlace() {
+        WriterPool pool = new WriterPool(2, 1024 * 1024);
+
+        try (PooledWriter writer = pool.acquire()) {
+            writer.write("<p>Hello ");
+            writer.write(new char[] { 'J', 'o', 'h', 'n' }, 0, 4);
+            writer.append("!</p>", 0, 1).append('<').append(new StringBuilder("/p>"));
+
+            assertEquals(18, writer.length());
+            assertEquals('J', writer.charAt(9));
+            assertEquals("Hello", writer.subSequence(3, 8));
+            assertEquals("<p>Hello John!</p>", writer.toString());
+        }
+    }
+
+    @Test
+    public void shouldGrowBeyondInitialCapacity() {
+        WriterPool pool = new WriterPool(2, 1024 * 1024);
+        String line = "<tr><td>0123456789</td></tr>\n";
+
+        try (PooledWriter writer = pool.acquire()) {
+            for (int i = 0; i < 10000; i++) {
+                writer.write(line);
+            }
+
+            assertEquals(line.length() * 10000, writer.length());
+            assertEquals(line, writer.subSequence(line.length() * 9999, writer.length()));
+        }
+    }
+
+    @Test
+    public void shouldReuseReleasedWriters() {
+        WriterPool pool = new WriterPool(2, 1024 * 1024);
+
+        PooledWriter first = pool.acquire();
+        first.write("first");
+        first.close();
+        // Closing twice must not pool the writer twice
+        first.close();
+        assertEquals(1, pool.size());
+
+        PooledWriter second = pool.acquire();
+        assertSame(first, second);
+        assertEquals(0, second.length());
+        assertEquals(1, pool.hits());
+        assertEquals(1, pool.misses());
+        assertNotSame(second, pool.acquire());
+    }
+
+    @Test
+    public void shouldNotPoolMoreThanMaximumSize() {
+        WriterPool pool = new WriterPool(1, 1024 * 1024);
+
+        PooledWriter first = pool.acquire();
+        PooledWriter second = pool.acquire();
+        first.close();
+        second.close();
+
+        assertEquals(1, pool.size());
+    }
+
+    @Test
+    public void shouldDropWritersGrownAboveMaximumCapacity() {
+        WriterPool pool = new WriterPool(2, 8192);
+
+        PooledWriter writer = pool.acquire();
+        writer.write(new char[10000], 0, 10000);
+        writer.close();
+
+        assertEquals(0, pool.size());
+    }
+}
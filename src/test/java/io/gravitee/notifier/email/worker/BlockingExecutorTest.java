@@ -0,0 +1,87 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.notifier.email.worker;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author GraviteeSource Team
+ */
+public class BlockingExecutorTest {
+
+    private final Vertx vertx = Vertx.vertx();
+
+    @AfterEach
+    public void tearDown() {
+        vertx.close();
+    }
+
+    @Test
+    public void shouldRunTaskOnWorker() throws Exception {
+        shouldRunTaskOutOfEventLoop(BlockingExecutor.Type.WORKER);
+    }
+
+    @Test
+    public void shouldRunTaskOnVirtualThreadOrFallbackToWorker() throws Exception {
+        shouldRunTaskOutOfEventLoop(BlockingExecutor.Type.VIRTUAL);
+    }
+
+    private void shouldRunTaskOutOfEventLoop(BlockingExecutor.Type type) throws Exception {
+        BlockingExecutor executor = new BlockingExecutor("test", 2, type);
+        CompletableFuture<Boolean> onEventLoop = new CompletableFuture<>();
+        CompletableFuture<Boolean> completedOnContext = new CompletableFuture<>();
+
+        Context context = vertx.getOrCreateContext();
+        context.runOnContext(v ->
+            executor
+                .execute(vertx, () -> Context.isOnEventLoopThread())
+                .onComplete(e -> {
+                    onEventLoop.complete(e.result());
+                    completedOnContext.complete(Vertx.currentContext() == context);
+                })
+        );
+
+        assertFalse(onEventLoop.get(5, TimeUnit.SECONDS));
+        assertTrue(completedOnContext.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void shouldReportTaskFailure() throws Exception {
+        BlockingExecutor executor = new BlockingExecutor("test", 1, BlockingExecutor.Type.WORKER);
+        CompletableFuture<Throwable> failure = new CompletableFuture<>();
+
+        vertx.runOnContext(v ->
+            executor
+                .execute(
+                    vertx,
+                    () -> {
+                        throw new IOException("Template not found");
+                    }
+                )
+                .onComplete(e -> failure.complete(e.cause()))
+        );
+
+        assertTrue(failure.get(5, TimeUnit.SECONDS) instanceof IOException);
+    }
+}